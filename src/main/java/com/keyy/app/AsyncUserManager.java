@@ -0,0 +1,84 @@
+package com.keyy.app;
+
+import javafx.application.Platform;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Runs UserManager calls on a background thread so the FX thread never waits
+// on the disk. A single worker keeps requests in submission order, so a score
+// saved on the result screen is visible to the dashboard opened right after.
+public class AsyncUserManager {
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "keyy-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Continuations that must touch the scene graph run here
+    public static final Executor FX = Platform::runLater;
+
+    private AsyncUserManager() {
+    }
+
+    public static CompletableFuture<Void> initialize() {
+        return CompletableFuture.runAsync(UserManager::initialize, IO);
+    }
+
+    public static CompletableFuture<Boolean> loginUser(String username, String password) {
+        return supply(() -> UserManager.loginUser(username, password));
+    }
+
+    public static CompletableFuture<Boolean> registerUser(String username, String password) {
+        return supply(() -> UserManager.registerUser(username, password));
+    }
+
+    public static CompletableFuture<Void> saveScore(String username, double wpm, double accuracy, int timeInSeconds) {
+        return CompletableFuture.runAsync(() -> UserManager.saveScore(username, wpm, accuracy, timeInSeconds), IO);
+    }
+
+    public static CompletableFuture<Void> saveKeyStats(String username, KeyStats session) {
+        return CompletableFuture.runAsync(() -> UserManager.saveKeyStats(username, session), IO);
+    }
+
+    public static CompletableFuture<Void> saveReplay(String username, Replay replay) {
+        return CompletableFuture.runAsync(() -> UserManager.saveReplay(username, replay), IO);
+    }
+
+    public static CompletableFuture<UserStats> getUserStats(String username) {
+        return supply(() -> UserManager.getUserStats(username));
+    }
+
+    public static CompletableFuture<List<LeaderboardEntry>> getLeaderboardRange(LeaderboardWindow window, int from, int count) {
+        return supply(() -> UserManager.getLeaderboardRange(window, from, count));
+    }
+
+    public static CompletableFuture<Integer> getLeaderboardSize(LeaderboardWindow window) {
+        return supply(() -> UserManager.getLeaderboardSize(window));
+    }
+
+    public static CompletableFuture<Integer> getRank(LeaderboardWindow window, String username) {
+        return supply(() -> UserManager.getRank(window, username));
+    }
+
+    // Run any UserManager work on the I/O thread
+    public static <T> CompletableFuture<T> supply(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, IO);
+    }
+
+    // Hand a result to the FX thread, logging failures like the sync code did
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<T> action) {
+        future.whenCompleteAsync((result, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            } else {
+                action.accept(result);
+            }
+        }, FX);
+    }
+}
@@ -0,0 +1,237 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+// Word list or quote pack loaded from a resource file.
+// Each line is "entry" or "entry<TAB>weight"; lines starting with # are
+// comments. The file is memory-mapped when it sits on disk (read into one
+// buffer when it is inside a jar) and only entry offsets are indexed, so no
+// String exists for an entry until it is drawn. Entries are sampled by
+// weight in constant time with Vose's alias method.
+public class Corpus {
+    private static Corpus words;
+    private static Corpus quotes;
+
+    private final ByteBuffer data;
+    private final int[] starts;
+    private final int[] lengths;
+    private final int size;
+
+    // Alias table: pick a column uniformly, keep it with probability
+    // prob[column], otherwise take alias[column]
+    private final double[] prob;
+    private final int[] alias;
+
+    private CorpusIndex index;
+
+    // Shared word list for timed tests
+    public static synchronized Corpus words() {
+        if (words == null) {
+            words = load("corpus/english.txt");
+        }
+        return words;
+    }
+
+    // Shared passages for untimed tests
+    public static synchronized Corpus quotes() {
+        if (quotes == null) {
+            quotes = load("corpus/quotes.txt");
+        }
+        return quotes;
+    }
+
+    public static Corpus load(String resource) {
+        URL url = Corpus.class.getResource(resource);
+        if (url == null) {
+            throw new IllegalArgumentException("Missing corpus resource: " + resource);
+        }
+        try {
+            return new Corpus(read(url));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Corpus(ByteBuffer data) {
+        this.data = data;
+
+        int[] starts = new int[1024];
+        int[] lengths = new int[1024];
+        double[] weights = new double[1024];
+        int count = 0;
+
+        int limit = data.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            int tab = -1;
+            while (lineEnd < limit && data.get(lineEnd) != '\n') {
+                if (tab < 0 && data.get(lineEnd) == '\t') tab = lineEnd;
+                lineEnd++;
+            }
+            int entryEnd = tab >= 0 ? tab : lineEnd;
+            if (entryEnd > lineStart && data.get(entryEnd - 1) == '\r') entryEnd--;
+
+            if (entryEnd > lineStart && data.get(lineStart) != '#') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    lengths = Arrays.copyOf(lengths, count * 2);
+                    weights = Arrays.copyOf(weights, count * 2);
+                }
+                starts[count] = lineStart;
+                lengths[count] = entryEnd - lineStart;
+                weights[count] = tab >= 0 ? parseWeight(data, tab + 1, lineEnd) : 1;
+                count++;
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        if (count == 0) {
+            throw new IllegalArgumentException("Corpus has no entries");
+        }
+        this.starts = starts;
+        this.lengths = lengths;
+        this.size = count;
+        this.prob = new double[count];
+        this.alias = new int[count];
+        buildAliasTable(weights);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Index of a random entry, drawn in proportion to its weight
+    public int sample(Random random) {
+        int column = random.nextInt(size);
+        return random.nextDouble() < prob[column] ? column : alias[column];
+    }
+
+    // Length in bytes of an entry
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    // One byte of an entry, for scanning without decoding it
+    public byte byteAt(int index, int offset) {
+        return data.get(starts[index] + offset);
+    }
+
+    // Lookup from keys and bigrams to the entries containing them, built on first use
+    public synchronized CorpusIndex index() {
+        if (index == null) {
+            index = new CorpusIndex(this);
+        }
+        return index;
+    }
+
+    public String get(int index) {
+        byte[] bytes = new byte[lengths[index]];
+        data.get(starts[index], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Append an entry without creating a String for it (ASCII fast path)
+    public void appendTo(StringBuilder out, int index) {
+        int start = starts[index];
+        int end = start + lengths[index];
+        for (int i = start; i < end; i++) {
+            byte b = data.get(i);
+            if (b < 0) {
+                String entry = get(index);
+                out.append(entry, i - start, entry.length());
+                return;
+            }
+            out.append((char) b);
+        }
+    }
+
+    // Space-separated run of weighted random entries
+    public String generate(int count, Random random) {
+        StringBuilder out = new StringBuilder(count * 6);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) out.append(' ');
+            appendTo(out, sample(random));
+        }
+        return out.toString();
+    }
+
+    private void buildAliasTable(double[] weights) {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += weights[i];
+        }
+
+        // Scale so the average column holds exactly 1, then pair every
+        // under-full column with an over-full one
+        double[] scaled = new double[size];
+        int[] small = new int[size];
+        int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = total > 0 ? weights[i] * size / total : 1;
+            if (scaled[i] < 1) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            prob[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] -= 1 - scaled[less];
+            if (scaled[more] < 1) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        // Leftovers are full up to rounding error
+        while (largeCount > 0) prob[large[--largeCount]] = 1;
+        while (smallCount > 0) prob[small[--smallCount]] = 1;
+    }
+
+    private static double parseWeight(ByteBuffer data, int start, int end) {
+        double value = 0;
+        double scale = 0;
+        for (int i = start; i < end; i++) {
+            byte b = data.get(i);
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (scale > 0) scale *= 10;
+            } else if (b == '.' && scale == 0) {
+                scale = 1;
+            } else if (b != '\r' && b != ' ') {
+                return 1;
+            }
+        }
+        return scale > 1 ? value / scale : value;
+    }
+
+    private static ByteBuffer read(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            try {
+                Path file = Paths.get(url.toURI());
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    // The mapping stays valid after the channel is closed
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            } catch (URISyntaxException e) {
+                // Fall back to the stream below
+            }
+        }
+        try (InputStream in = url.openStream()) {
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+}
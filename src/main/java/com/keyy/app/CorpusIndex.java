@@ -0,0 +1,83 @@
+package com.keyy.app;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Which corpus entries contain each key and each bigram.
+// Keys and bigrams are numbered as in KeyStats. Each posting list is a slice
+// of one shared int array (offsets[k] up to offsets[k + 1]), so the index is
+// two passes over the corpus bytes to build, one to count and one to place,
+// and picking an entry for a key or bigram is a single array read.
+public class CorpusIndex {
+    private final int[] keyOffsets = new int[KeyStats.KEYS + 1];
+    private final int[] bigramOffsets = new int[KeyStats.BIGRAMS + 1];
+    private int[] keyEntries;
+    private int[] bigramEntries;
+
+    CorpusIndex(Corpus corpus) {
+        scan(corpus, null, null);
+
+        for (int k = 0; k < KeyStats.KEYS; k++) keyOffsets[k + 1] += keyOffsets[k];
+        for (int b = 0; b < KeyStats.BIGRAMS; b++) bigramOffsets[b + 1] += bigramOffsets[b];
+        keyEntries = new int[keyOffsets[KeyStats.KEYS]];
+        bigramEntries = new int[bigramOffsets[KeyStats.BIGRAMS]];
+
+        scan(corpus, keyOffsets.clone(), bigramOffsets.clone());
+    }
+
+    // Without fill positions, count postings into the offsets; with them,
+    // write each posting at its list's next free slot
+    private void scan(Corpus corpus, int[] keyFill, int[] bigramFill) {
+        // An entry is listed once per key or bigram, however often it repeats
+        int[] lastKeyEntry = new int[KeyStats.KEYS];
+        int[] lastBigramEntry = new int[KeyStats.BIGRAMS];
+        Arrays.fill(lastKeyEntry, -1);
+        Arrays.fill(lastBigramEntry, -1);
+
+        for (int entry = 0; entry < corpus.size(); entry++) {
+            int previous = -1;
+            for (int i = 0; i < corpus.length(entry); i++) {
+                int key = corpus.byteAt(entry, i) - KeyStats.FIRST_CHAR;
+                if (key < 0 || key >= KeyStats.KEYS) {
+                    previous = -1;
+                    continue;
+                }
+
+                if (lastKeyEntry[key] != entry) {
+                    lastKeyEntry[key] = entry;
+                    if (keyFill == null) keyOffsets[key + 1]++;
+                    else keyEntries[keyFill[key]++] = entry;
+                }
+                if (previous >= 0) {
+                    int bigram = previous * KeyStats.KEYS + key;
+                    if (lastBigramEntry[bigram] != entry) {
+                        lastBigramEntry[bigram] = entry;
+                        if (bigramFill == null) bigramOffsets[bigram + 1]++;
+                        else bigramEntries[bigramFill[bigram]++] = entry;
+                    }
+                }
+                previous = key;
+            }
+        }
+    }
+
+    public int entriesWithKey(int key) {
+        return keyOffsets[key + 1] - keyOffsets[key];
+    }
+
+    public int entriesWithBigram(int bigram) {
+        return bigramOffsets[bigram + 1] - bigramOffsets[bigram];
+    }
+
+    // A random entry containing the key, or -1 if there is none
+    public int randomWithKey(int key, Random random) {
+        int count = entriesWithKey(key);
+        return count == 0 ? -1 : keyEntries[keyOffsets[key] + random.nextInt(count)];
+    }
+
+    // A random entry containing the bigram, or -1 if there is none
+    public int randomWithBigram(int bigram, Random random) {
+        int count = entriesWithBigram(bigram);
+        return count == 0 ? -1 : bigramEntries[bigramOffsets[bigram] + random.nextInt(count)];
+    }
+}
@@ -9,7 +9,6 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.util.List;
 
 public class DashboardController {
 
@@ -20,6 +19,8 @@ public class DashboardController {
     @FXML private Label avgAccuracyLabel;
     @FXML private Label totalAttemptsLabel;
     @FXML private Label streakLabel;
+    @FXML private Label globalRankLabel;
+    @FXML private Label globalRankCaption;
     @FXML private Button newTestBtn;
     @FXML private Button progressBtn;
     @FXML private Button leaderboardBtn;
@@ -49,29 +50,29 @@ public class DashboardController {
     private void loadUserStats() {
         welcomeLabel.setText("Welcome back, " + currentUsername + "! 👋");
 
-        double bestWPM = UserManager.getBestWPM(currentUsername);
-        double avgWPM = UserManager.getAverageWPM(currentUsername);
-        int totalAttempts = UserManager.getTotalAttempts(currentUsername);
-        double avgAccuracy = calculateAverageAccuracy();
-        int streak = calculateStreak();
-
-        bestWpmLabel.setText(String.format("%.1f", bestWPM));
-        avgWpmLabel.setText(String.format("%.1f", avgWPM));
-        avgAccuracyLabel.setText(String.format("%.1f%%", avgAccuracy));
-        totalAttemptsLabel.setText(String.valueOf(totalAttempts));
-        streakLabel.setText(streak + " days");
-    }
-
-    private double calculateAverageAccuracy() {
-        List<ScoreRecord> scores = UserManager.getUserScores(currentUsername);
-        if (scores.isEmpty()) return 0.0;
-        return scores.stream().mapToDouble(ScoreRecord::getAccuracy).average().orElse(0.0);
-    }
-
-    private int calculateStreak() {
-        List<ScoreRecord> scores = UserManager.getUserScores(currentUsername);
-        if (scores.isEmpty()) return 0;
-        return (int) scores.stream().map(ScoreRecord::getDate).distinct().count();
+        // Placeholders until the stats arrive from disk
+        bestWpmLabel.setText("…");
+        avgWpmLabel.setText("…");
+        avgAccuracyLabel.setText("…");
+        totalAttemptsLabel.setText("…");
+        streakLabel.setText("…");
+
+        AsyncUserManager.onFxThread(AsyncUserManager.getUserStats(currentUsername), stats -> {
+            bestWpmLabel.setText(String.format("%.1f", stats.getBestWpm()));
+            avgWpmLabel.setText(String.format("%.1f", stats.getAverageWpm()));
+            avgAccuracyLabel.setText(String.format("%.1f%%", stats.getAverageAccuracy()));
+            totalAttemptsLabel.setText(String.valueOf(stats.getCount()));
+            streakLabel.setText(stats.getStreak() + " days");
+        });
+
+        // Looked up in the rank index, without loading the leaderboard itself
+        globalRankLabel.setText("…");
+        AsyncUserManager.onFxThread(AsyncUserManager.getRank(LeaderboardWindow.ALL_TIME, currentUsername)
+                .thenCombine(AsyncUserManager.getLeaderboardSize(LeaderboardWindow.ALL_TIME), (rank, size) -> new int[]{rank, size}),
+                rank -> {
+                    globalRankLabel.setText(rank[0] > 0 ? String.format("#%,d", rank[0]) : "—");
+                    globalRankCaption.setText(String.format("🌍 Rank of %,d", rank[1]));
+                });
     }
 
     private void toggleDarkMode() {
@@ -88,7 +89,7 @@ public class DashboardController {
     // ========== NAVIGATION METHODS WITH MAXIMIZE FIX ==========
 
     private void startNewTest() {
-        loadScene("keyy-view.fxml", "Keyy - Typing Test", KeyyController.class);
+        loadScene("test-mode-selection.fxml", "Keyy - Select Test Mode", TestModeSelectionController.class);
     }
 
     private void showProgress() {
@@ -147,6 +148,8 @@ public class DashboardController {
                 ((LeaderboardController) controller).setCurrentUser(currentUsername);
             } else if (controller instanceof SettingsController) {
                 ((SettingsController) controller).setCurrentUser(currentUsername);
+            } else if (controller instanceof TestModeSelectionController) {
+                ((TestModeSelectionController) controller).setCurrentUser(currentUsername);
             }
 
             Stage stage = (Stage) rootVBox.getScene().getWindow();
@@ -0,0 +1,198 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+// The original layout: users.txt with one name:password line per user, and a
+// binary score log per user under scores/. Saves go through the write-behind
+// ScoreWriter and the leaderboard is materialized in memory. Date ranges are
+// answered by reading the whole log and filtering.
+public class FlatFileRepository implements UserRepository {
+    private final Path dataDirectory;
+    private final Path scoresDirectory;
+    private final StripedFileLock userLocks;
+    private final UserStore userStore;
+
+    // Created (and recovered) by open()
+    private ScoreWriter scoreWriter;
+
+    // Built on first use, then kept current by addUser and addScore
+    private Leaderboard leaderboard;
+
+    public FlatFileRepository(Path dataDirectory, StripedFileLock userLocks) {
+        this.dataDirectory = dataDirectory;
+        this.scoresDirectory = dataDirectory.resolve("scores");
+        this.userLocks = userLocks;
+        this.userStore = new UserStore(dataDirectory.resolve("users.txt"));
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (scoreWriter != null) return;
+
+        Files.createDirectories(scoresDirectory);
+        Path usersFile = dataDirectory.resolve("users.txt");
+        if (!Files.exists(usersFile)) {
+            try {
+                Files.createFile(usersFile);
+            } catch (FileAlreadyExistsException e) {
+                // Another instance created it first
+            }
+        }
+
+        migrateTextScores();
+        userStore.load();
+        scoreWriter = ScoreWriter.open(dataDirectory, this::scoreLogPath, userLocks, ScoreWriter.configuredPolicy());
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scoreWriter != null) {
+            scoreWriter.close();
+            scoreWriter = null;
+        }
+    }
+
+    // Saves need the journal, so a repository that was never opened opens now
+    private synchronized ScoreWriter scoreWriter() {
+        if (scoreWriter == null) {
+            try {
+                open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open a score journal in " + dataDirectory, e);
+            }
+        }
+        return scoreWriter;
+    }
+
+    // One-time conversion of old .txt score files to the binary log format
+    private void migrateTextScores() throws IOException {
+        List<Path> textFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(scoresDirectory, "*.txt")) {
+            stream.forEach(textFiles::add);
+        }
+
+        for (Path textFile : textFiles) {
+            String name = textFile.getFileName().toString();
+            String username = name.substring(0, name.length() - ".txt".length());
+            Path logFile = scoreLogPath(username);
+            userLocks.run(username, () -> {
+                if (Files.exists(textFile) && !Files.exists(logFile)) {
+                    ScoreLog.migrate(textFile, logFile);
+                }
+            });
+        }
+    }
+
+    private Path scoreLogPath(String username) {
+        return scoresDirectory.resolve(username + ScoreLog.EXTENSION);
+    }
+
+    @Override
+    public boolean addUser(String username, String password) throws IOException {
+        if (!userStore.add(username, password)) {
+            return false;
+        }
+
+        // Create user's score file
+        Path scoreFile = scoreLogPath(username);
+        userLocks.run(username, () -> {
+            if (!Files.exists(scoreFile)) {
+                ScoreLog.create(scoreFile);
+            }
+        });
+
+        synchronized (this) {
+            if (leaderboard != null) {
+                leaderboard.addUser(username);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return userStore.contains(username);
+    }
+
+    @Override
+    public boolean passwordMatches(String username, String password) {
+        return userStore.matches(username, password);
+    }
+
+    @Override
+    public List<String> usernames() {
+        return userStore.usernames();
+    }
+
+    String password(String username) {
+        return userStore.password(username);
+    }
+
+    @Override
+    public void addScore(String username, float wpm, float accuracy, int seconds, int epochDay) {
+        scoreWriter().submit(username, wpm, accuracy, seconds, epochDay);
+
+        synchronized (this) {
+            if (leaderboard != null) {
+                leaderboard.recordScore(username, wpm);
+            }
+        }
+    }
+
+    @Override
+    public void forEachScore(String username, ScoreVisitor visitor) {
+        // Make sure queued saves are on disk before reading the file
+        scoreWriter().flush();
+
+        try {
+            ScoreLog.Cursor cursor = ScoreLog.open(scoreLogPath(username));
+            while (cursor.next()) {
+                visitor.visit(cursor.wpm(), cursor.accuracy(), cursor.seconds(), cursor.epochDay());
+            }
+        } catch (NoSuchFileException e) {
+            // File might not exist yet
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void forEachScore(String username, int fromDay, int toDay, ScoreVisitor visitor) {
+        forEachScore(username, (wpm, accuracy, seconds, epochDay) -> {
+            if (epochDay >= fromDay && epochDay <= toDay) {
+                visitor.visit(wpm, accuracy, seconds, epochDay);
+            }
+        });
+    }
+
+    @Override
+    public int rankedCount() {
+        return leaderboard().size();
+    }
+
+    @Override
+    public List<LeaderboardEntry> rankRange(int from, int count) {
+        return leaderboard().range(from, count);
+    }
+
+    @Override
+    public int rankOf(String username) {
+        return leaderboard().rankOf(username);
+    }
+
+    // Build the leaderboard by reading every score file once
+    private synchronized Leaderboard leaderboard() {
+        if (leaderboard == null) {
+            Leaderboard board = new Leaderboard();
+            for (String username : userStore.usernames()) {
+                board.addUser(username);
+                forEachScore(username, (wpm, accuracy, seconds, epochDay) -> board.recordScore(username, wpm));
+            }
+            leaderboard = board;
+        }
+        return leaderboard;
+    }
+}
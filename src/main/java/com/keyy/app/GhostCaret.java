@@ -0,0 +1,84 @@
+package com.keyy.app;
+
+// Where a recorded run's caret was at any moment of a new test.
+// The ghost follows the furthest point the run reached, so its mistakes and
+// backspaces show up as pauses rather than as the caret jumping back. The
+// time each passage character was first reached is computed once; after that
+// a frame only moves a pointer forward and interpolates inside one character,
+// which costs the same however long the passage is.
+public class GhostCaret {
+    private final Replay replay;
+
+    // reachTimes[i] is when the run first got past character i - 1, so
+    // reachTimes[0] is 0 and the array never decreases
+    private final long[] reachTimes;
+
+    // Characters passed at the last position() call and the fraction of the next one
+    private int passed;
+    private double fraction;
+
+    public GhostCaret(Replay replay) {
+        this.replay = replay;
+
+        int length = replay.passage().length();
+        reachTimes = new long[length + 1];
+        int position = 0;
+        int furthest = 0;
+        for (int i = 0; i < replay.size() && furthest < length; i++) {
+            if (replay.kind(i) == Replay.BACKSPACE) {
+                position = Math.max(0, position - 1);
+            } else if (++position > furthest) {
+                furthest = position;
+                reachTimes[furthest] = replay.time(i);
+            }
+        }
+        // A run cut off mid-passage never reaches the rest
+        for (int i = furthest + 1; i <= length; i++) {
+            reachTimes[i] = Long.MAX_VALUE;
+        }
+    }
+
+    public Replay replay() {
+        return replay;
+    }
+
+    public String passage() {
+        return replay.passage();
+    }
+
+    // Back to the start of the passage
+    public void reset() {
+        passed = 0;
+        fraction = 0;
+    }
+
+    // Move to the given nanoseconds after the first keystroke. Times must not
+    // go backwards between resets.
+    public void advance(long nanos) {
+        int last = reachTimes.length - 1;
+        while (passed < last && reachTimes[passed + 1] <= nanos) {
+            passed++;
+        }
+
+        if (isFinished()) {
+            fraction = 0;
+        } else {
+            long from = reachTimes[passed];
+            fraction = Math.max(0, Math.min(1, (double) (nanos - from) / (reachTimes[passed + 1] - from)));
+        }
+    }
+
+    // Passage characters the ghost has typed
+    public int position() {
+        return passed;
+    }
+
+    // How far through the next character the ghost is, from 0 to 1
+    public double fraction() {
+        return fraction;
+    }
+
+    public boolean isFinished() {
+        return passed == reachTimes.length - 1 || reachTimes[passed + 1] == Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,531 @@
+package com.keyy.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+// Embedded store under user_data/db: every user and every score lives in one
+// of two append-only logs, however many users there are.
+//
+//   users.log   header | (name | password | crc) per user, the user id being its position
+//   scores.log  header | (user id | wpm | accuracy | seconds | epoch day | crc) per score
+//
+// Two indexes are kept in memory. A SortedIndex on (user id, epoch day) makes
+// a user's history, or any date range of it, a range scan. A RankIndex on
+// each user's best WPM finds a page of the leaderboard or one user's rank in
+// O(log n), and only the rows shown are summed up from the (user, date)
+// index. The (user, date) index is saved on close and reloaded on start,
+// which then only indexes newer records; ranks are rebuilt from one
+// sequential pass over the log.
+//
+// Several instances may share the directory. Appends hold an exclusive lock
+// on the log, re-read what other instances appended first and cut off a torn
+// tail, like UserStore; every query first picks up records appended since.
+// Only one log lock is held at a time (the import takes users.log then
+// scores.log, and nothing takes them the other way round), so instances
+// cannot deadlock each other.
+public class IndexedRepository implements UserRepository {
+    private static final int USERS_MAGIC = 0x4B594455; // "KYDU"
+    private static final int SCORES_MAGIC = 0x4B594453; // "KYDS"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int SCORE_SIZE = 24;
+    private static final int SCORE_PAYLOAD_SIZE = 20;
+    private static final long DAY_MASK = 0xFFFFFFFFL;
+    private static final int MIN_TAIL_CAPACITY = 64 * SCORE_SIZE;
+    private static final long MIN_REMAP_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final FlatFileRepository legacy;
+    private final boolean force;
+
+    private FileChannel usersChannel;
+    private FileChannel scoresChannel;
+
+    // users.log read so far; a user's id is their index in these lists
+    private final List<String> names = new ArrayList<>();
+    private final List<String> passwords = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private long usersOffset = HEADER_SIZE;
+
+    // scores.log records indexed so far, and how many the saved index covers
+    private final SortedIndex byUserDate = new SortedIndex();
+    private int scoreCount;
+    private int savedCount;
+
+    // scores.log is mapped up to a record boundary, and records appended since
+    // are read into a heap tail. The mapping is only redone once the tail
+    // outgrows a quarter of it, so appends do not each leave a new mapping
+    // behind for the GC.
+    private MappedByteBuffer scores;
+    private ByteBuffer scoreTail = ByteBuffer.allocate(MIN_TAIL_CAPACITY);
+
+    // Every user's best, for O(log n) ranks; filled as records are indexed
+    private final RankIndex ranks = new RankIndex();
+
+    // The flat files are copied in once, when the database has no users yet
+    public IndexedRepository(Path directory, FlatFileRepository legacy) {
+        this.directory = directory;
+        this.legacy = legacy;
+        this.force = ScoreWriter.configuredPolicy() != ScoreWriter.FsyncPolicy.NEVER;
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (usersChannel != null) return;
+
+        Files.createDirectories(directory);
+        usersChannel = FileChannel.open(directory.resolve("users.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        scoresChannel = FileChannel.open(directory.resolve("scores.log"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeHeader(usersChannel, USERS_MAGIC);
+        writeHeader(scoresChannel, SCORES_MAGIC);
+
+        loadIndex();
+        readUsers(false);
+
+        // Records covered by the saved index still have to be ranked
+        if (scoreCount > 0) {
+            mapScores(offset(scoreCount));
+            for (int record = 0; record < scoreCount; record++) {
+                rank(record);
+            }
+        }
+        readScores(false);
+        if (names.isEmpty()) {
+            importLegacy();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (usersChannel == null) return;
+        try {
+            if (scoreCount > savedCount) {
+                byUserDate.save(directory.resolve("user_date.idx"), scoreCount);
+                savedCount = scoreCount;
+            }
+            usersChannel.close();
+            scoresChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        usersChannel = null;
+        scoresChannel = null;
+        unmapScores();
+    }
+
+    // New files get a header; existing ones must have the right one
+    private static void writeHeader(FileChannel channel, int magic) throws IOException {
+        FileLock lock = channel.lock();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.size() < HEADER_SIZE) {
+                header.putInt(magic).putShort(VERSION).putShort((short) 0).flip();
+                channel.truncate(0);
+                ScoreLog.writeFully(channel.position(0), header);
+                channel.force(false);
+            } else {
+                while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                    // Keep reading until the header is full
+                }
+                if (header.getInt(0) != magic || header.getShort(4) != VERSION) {
+                    throw new IOException("Not a keyy database file in " + channel);
+                }
+            }
+        } finally {
+            lock.release();
+        }
+    }
+
+    // Start from the saved index when it is intact and covers no more records than the log has
+    private void loadIndex() throws IOException {
+        int covered = byUserDate.load(directory.resolve("user_date.idx"));
+        long records = (scoresChannel.size() - HEADER_SIZE) / SCORE_SIZE;
+        if (covered > records) {
+            byUserDate.clear();
+            covered = 0;
+        }
+        scoreCount = covered;
+        savedCount = covered;
+    }
+
+    // Pick up what other instances appended. A record that is incomplete or
+    // fails its checksum may still be being written and is left for later,
+    // unless the caller holds the log's lock, in which case it was torn by a
+    // crash and is cut off.
+    private void readUsers(boolean locked) throws IOException {
+        long size = usersChannel.size();
+        if (size > usersOffset) {
+            ByteBuffer tail = ByteBuffer.allocate((int) (size - usersOffset));
+            while (tail.hasRemaining() && usersChannel.read(tail, usersOffset + tail.position()) >= 0) {
+                // Keep reading until the buffer is full
+            }
+            tail.flip();
+
+            CRC32 crc = new CRC32();
+            while (tail.remaining() >= 2) {
+                int start = tail.position();
+                String name = getString(tail);
+                String password = name != null ? getString(tail) : null;
+                if (password == null || tail.remaining() < 4) break;
+
+                crc.reset();
+                crc.update(tail.array(), start, tail.position() - start);
+                if ((int) crc.getValue() != tail.getInt()) break;
+
+                // First entry wins, same as users.txt
+                if (!ids.containsKey(name)) {
+                    ids.put(name, names.size());
+                    ranks.addUser(name);
+                }
+                names.add(name);
+                passwords.add(password);
+                usersOffset += tail.position() - start;
+            }
+        }
+        if (locked && size > usersOffset) {
+            usersChannel.truncate(usersOffset);
+        }
+    }
+
+    private void readScores(boolean locked) throws IOException {
+        long size = scoresChannel.size();
+        long complete = HEADER_SIZE + (size - HEADER_SIZE) / SCORE_SIZE * SCORE_SIZE;
+        long mapped = scores == null ? 0 : scores.capacity();
+        if (scores == null || complete - mapped > Math.max(MIN_REMAP_BYTES, mapped / 4)) {
+            mapScores(complete);
+        } else if (complete > mapped + scoreTail.position()) {
+            readTail(complete);
+        }
+        mapped = scores.capacity();
+
+        int records = (int) ((complete - HEADER_SIZE) / SCORE_SIZE);
+        if (records > scoreCount) {
+            CRC32 crc = new CRC32();
+            while (scoreCount < records) {
+                int at = offset(scoreCount);
+                crc.reset();
+                crc.update(scoreSlice(at));
+                if ((int) crc.getValue() != scoreInt(at + SCORE_PAYLOAD_SIZE)) break;
+
+                byUserDate.add(userDateKey(scoreInt(at), scoreInt(at + 16)), scoreCount);
+                rank(scoreCount);
+                scoreCount++;
+            }
+        }
+
+        // The tail is a copy, so a record still being written must be read again later
+        long valid = offset(scoreCount);
+        if (valid < mapped + scoreTail.position()) {
+            scoreTail.position((int) Math.max(0, valid - mapped));
+        }
+        if (locked && size > valid) {
+            // The mapping must go before the file shrinks under it
+            if (scores != null && valid < scores.capacity()) {
+                unmapScores();
+            }
+            scoresChannel.truncate(valid);
+        }
+    }
+
+    private void mapScores(long end) throws IOException {
+        scores = scoresChannel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        scoreTail.clear();
+    }
+
+    private void unmapScores() {
+        scores = null;
+        scoreTail.clear();
+    }
+
+    // Append the bytes after the mapping and the tail, up to end, to the tail
+    private void readTail(long end) throws IOException {
+        long start = scores.capacity();
+        int needed = (int) (end - start);
+        if (needed > scoreTail.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(needed, scoreTail.capacity() * 2));
+            scoreTail.flip();
+            grown.put(scoreTail);
+            scoreTail = grown;
+        }
+        while (scoreTail.position() < needed) {
+            scoreTail.limit(needed);
+            if (scoresChannel.read(scoreTail, start + scoreTail.position()) < 0) break;
+        }
+        scoreTail.limit(scoreTail.capacity());
+    }
+
+    // A score record's payload, from the mapping or the tail
+    private ByteBuffer scoreSlice(int at) {
+        int mapped = scores.capacity();
+        return at < mapped ? scores.slice(at, SCORE_PAYLOAD_SIZE) : scoreTail.slice(at - mapped, SCORE_PAYLOAD_SIZE);
+    }
+
+    private int scoreInt(int at) {
+        int mapped = scores.capacity();
+        return at < mapped ? scores.getInt(at) : scoreTail.getInt(at - mapped);
+    }
+
+    private float scoreFloat(int at) {
+        int mapped = scores.capacity();
+        return at < mapped ? scores.getFloat(at) : scoreTail.getFloat(at - mapped);
+    }
+
+    // Raise the record's user's best in the rank index if it beats it
+    private void rank(int record) throws IOException {
+        int at = offset(record);
+        int id = scoreInt(at);
+        if (id >= names.size()) {
+            // Users are always appended before their scores
+            readUsers(false);
+            if (id >= names.size()) return;
+        }
+        String name = names.get(id);
+        if (ids.get(name) == id) {
+            ranks.updateBest(name, scoreFloat(at + 4));
+        }
+    }
+
+    private void refresh() {
+        try {
+            readUsers(false);
+            readScores(false);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static int offset(int record) {
+        return HEADER_SIZE + record * SCORE_SIZE;
+    }
+
+    private static long userDateKey(int userId, int epochDay) {
+        return ((long) userId << 32) | (epochDay & DAY_MASK);
+    }
+
+    // A length-prefixed UTF-8 string, or null if it runs past the buffer
+    private static String getString(ByteBuffer buffer) {
+        if (buffer.remaining() < 2) return null;
+        int length = buffer.getShort() & 0xFFFF;
+        if (buffer.remaining() < length) return null;
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void putUser(ByteArrayOutputStream out, String name, String password) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(2 + nameBytes.length + 2 + passwordBytes.length + 4);
+        record.putShort((short) nameBytes.length).put(nameBytes)
+                .putShort((short) passwordBytes.length).put(passwordBytes);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        out.write(record.array(), 0, record.position());
+    }
+
+    private static void putScore(ByteBuffer buffer, int userId, float wpm, float accuracy, int seconds, int epochDay) {
+        int start = buffer.position();
+        buffer.putInt(userId).putFloat(wpm).putFloat(accuracy).putInt(seconds).putInt(epochDay);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, SCORE_PAYLOAD_SIZE);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // Copy users.txt and every score log into the empty database in one go.
+    // Scores are written before users: a crash in between leaves no users,
+    // so the next start imports again over the scores written so far.
+    private void importLegacy() throws IOException {
+        List<String> legacyNames = legacy.usernames();
+        if (legacyNames.isEmpty()) return;
+
+        // Opening the flat store replays its journals, so no queued score is missed
+        legacy.open();
+        try {
+            FileLock usersLock = usersChannel.lock();
+            try {
+                copyLegacy(legacyNames);
+            } finally {
+                usersLock.release();
+            }
+        } finally {
+            legacy.close();
+        }
+    }
+
+    // Write the flat store's users and scores into the logs; holds the users.log lock
+    private void copyLegacy(List<String> legacyNames) throws IOException {
+        readUsers(true);
+        if (!names.isEmpty()) return; // Another instance got here first
+
+        ByteArrayOutputStream userRecords = new ByteArrayOutputStream();
+        ByteArrayOutputStream scoreRecords = new ByteArrayOutputStream();
+        ByteBuffer score = ByteBuffer.allocate(SCORE_SIZE);
+        for (int id = 0; id < legacyNames.size(); id++) {
+            String name = legacyNames.get(id);
+            putUser(userRecords, name, legacy.password(name));
+
+            int userId = id;
+            legacy.forEachScore(name, (wpm, accuracy, seconds, epochDay) -> {
+                score.clear();
+                putScore(score, userId, wpm, accuracy, seconds, epochDay);
+                scoreRecords.write(score.array(), 0, SCORE_SIZE);
+            });
+        }
+
+        FileLock scoresLock = scoresChannel.lock();
+        try {
+            unmapScores();
+            byUserDate.clear();
+            scoreCount = 0;
+            savedCount = 0;
+            scoresChannel.truncate(HEADER_SIZE);
+            ScoreLog.writeFully(scoresChannel.position(HEADER_SIZE), ByteBuffer.wrap(scoreRecords.toByteArray()));
+            scoresChannel.force(false);
+        } finally {
+            scoresLock.release();
+        }
+        ScoreLog.writeFully(usersChannel.position(usersOffset), ByteBuffer.wrap(userRecords.toByteArray()));
+        usersChannel.force(false);
+
+        readUsers(false);
+        readScores(false);
+    }
+
+    @Override
+    public synchronized boolean addUser(String username, String password) throws IOException {
+        readUsers(false);
+        if (ids.containsKey(username)) return false;
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        putUser(record, username, password);
+        FileLock lock = usersChannel.lock();
+        try {
+            // Another instance may have taken the name since this one last looked
+            readUsers(true);
+            if (ids.containsKey(username)) return false;
+
+            ScoreLog.writeFully(usersChannel.position(usersOffset), ByteBuffer.wrap(record.toByteArray()));
+            usersChannel.force(false);
+            readUsers(false);
+        } finally {
+            lock.release();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean userExists(String username) {
+        if (!ids.containsKey(username)) refresh();
+        return ids.containsKey(username);
+    }
+
+    @Override
+    public synchronized boolean passwordMatches(String username, String password) {
+        if (!ids.containsKey(username)) refresh();
+        Integer id = ids.get(username);
+        return id != null && passwords.get(id).equals(password);
+    }
+
+    @Override
+    public synchronized List<String> usernames() {
+        refresh();
+        List<String> registered = new ArrayList<>(ids.size());
+        for (int id = 0; id < names.size(); id++) {
+            if (ids.get(names.get(id)) == id) registered.add(names.get(id));
+        }
+        return registered;
+    }
+
+    @Override
+    public synchronized void addScore(String username, float wpm, float accuracy, int seconds, int epochDay) {
+        try {
+            if (!ids.containsKey(username)) readUsers(false);
+            Integer id = ids.get(username);
+            if (id == null) {
+                throw new IOException("Cannot save a score for unknown user " + username);
+            }
+
+            ByteBuffer record = ByteBuffer.allocate(SCORE_SIZE);
+            putScore(record, id, wpm, accuracy, seconds, epochDay);
+            record.flip();
+            FileLock lock = scoresChannel.lock();
+            try {
+                readScores(true);
+                ScoreLog.writeFully(scoresChannel.position(offset(scoreCount)), record);
+                if (force) {
+                    scoresChannel.force(false);
+                }
+                readScores(false);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void forEachScore(String username, ScoreVisitor visitor) {
+        forEachScore(username, 0, Integer.MAX_VALUE, visitor);
+    }
+
+    @Override
+    public synchronized void forEachScore(String username, int fromDay, int toDay, ScoreVisitor visitor) {
+        refresh();
+        Integer id = ids.get(username);
+        if (id == null || fromDay > toDay) return;
+
+        byUserDate.scan(userDateKey(id, fromDay), userDateKey(id, toDay), (key, record) -> {
+            int at = offset(record);
+            visitor.visit(scoreFloat(at + 4), scoreFloat(at + 8), scoreInt(at + 12), scoreInt(at + 16));
+            return true;
+        });
+    }
+
+    @Override
+    public synchronized int rankedCount() {
+        refresh();
+        return ranks.size();
+    }
+
+    @Override
+    public synchronized List<LeaderboardEntry> rankRange(int from, int count) {
+        refresh();
+        List<LeaderboardEntry> page = new ArrayList<>();
+        for (String name : ranks.range(from, count)) {
+            page.add(summarize(ids.get(name), name));
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized int rankOf(String username) {
+        refresh();
+        return ranks.rankOf(username);
+    }
+
+    // One user's totals, from their slice of the (user, date) index
+    private LeaderboardEntry summarize(int id, String name) {
+        LeaderboardEntry entry = new LeaderboardEntry(name);
+        byUserDate.scan(userDateKey(id, 0), userDateKey(id, Integer.MAX_VALUE), (key, record) -> {
+            entry.addScore(scoreFloat(offset(record) + 4));
+            return true;
+        });
+        return entry;
+    }
+}
@@ -0,0 +1,196 @@
+package com.keyy.app;
+
+import javafx.fxml.FXML;
+import javafx.fxml.FXMLLoader;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+
+public class KeyHeatmapController {
+
+    @FXML
+    private VBox rootVBox;
+
+    @FXML
+    private Button backBtn;
+
+    @FXML
+    private Button darkModeBtn;
+
+    @FXML
+    private Button modeBtn;
+
+    @FXML
+    private Label summaryLabel;
+
+    @FXML
+    private VBox keyboardBox;
+
+    @FXML
+    private VBox bigramBox;
+
+    private static final String[] KEYBOARD_ROWS = {"1234567890", "qwertyuiop", "asdfghjkl;", "zxcvbnm,./"};
+
+    // A key needs this many samples before it is coloured
+    private static final int MIN_SAMPLES = 5;
+
+    private String currentUsername;
+    private boolean isDarkMode = false;
+    private boolean showErrors = false;
+    private KeyStats keyStats;
+
+    @FXML
+    public void initialize() {
+        darkModeBtn.setText("🌙");
+        darkModeBtn.setOnAction(e -> toggleDarkMode());
+        backBtn.setOnAction(e -> goBackToProgress());
+        modeBtn.setOnAction(e -> toggleMode());
+    }
+
+    public void setCurrentUser(String username) {
+        this.currentUsername = username;
+        loadHeatmap();
+    }
+
+    private void loadHeatmap() {
+        summaryLabel.setText("Loading...");
+
+        String username = currentUsername;
+        AsyncUserManager.onFxThread(AsyncUserManager.supply(() -> UserManager.getKeyStats(username)), stats -> {
+            keyStats = stats;
+            if (stats.isEmpty()) {
+                summaryLabel.setText("No keystrokes recorded yet. Take a test!");
+                return;
+            }
+            showKeyboard();
+            showSlowestBigrams();
+        });
+    }
+
+    private void toggleMode() {
+        showErrors = !showErrors;
+        modeBtn.setText(showErrors ? "Show Speed" : "Show Errors");
+        if (keyStats != null && !keyStats.isEmpty()) {
+            showKeyboard();
+        }
+    }
+
+    private void showKeyboard() {
+        keyboardBox.getChildren().clear();
+
+        // Scale colours between the best and worst key with enough samples
+        double best = Double.MAX_VALUE;
+        double worst = 0;
+        for (String row : KEYBOARD_ROWS) {
+            for (char c : row.toCharArray()) {
+                if (keyStats.keyCount(c) < MIN_SAMPLES) continue;
+                double value = valueFor(c);
+                best = Math.min(best, value);
+                worst = Math.max(worst, value);
+            }
+        }
+
+        for (String row : KEYBOARD_ROWS) {
+            HBox rowBox = new HBox(8);
+            rowBox.setAlignment(Pos.CENTER);
+            for (char c : row.toCharArray()) {
+                rowBox.getChildren().add(createKey(String.valueOf(c).toUpperCase(), c, 60, best, worst));
+            }
+            keyboardBox.getChildren().add(rowBox);
+        }
+
+        HBox spaceRow = new HBox();
+        spaceRow.setAlignment(Pos.CENTER);
+        spaceRow.getChildren().add(createKey("Space", ' ', 400, best, worst));
+        keyboardBox.getChildren().add(spaceRow);
+
+        summaryLabel.setText(showErrors
+                ? "Error rate per key — red keys are missed most often"
+                : "Average time to reach each key — red keys are the slowest");
+    }
+
+    private Label createKey(String text, char c, double width, double best, double worst) {
+        int count = keyStats.keyCount(c);
+        String value = count < MIN_SAMPLES ? "–"
+                : showErrors ? String.format("%.0f%%", keyStats.keyErrorRate(c) * 100)
+                : String.format("%.0f ms", keyStats.keyAverageMillis(c));
+
+        Label key = new Label(text + "\n" + value);
+        key.setAlignment(Pos.CENTER);
+        key.setPrefSize(width, 60);
+        key.setStyle("-fx-font-size: 14px; -fx-font-weight: bold; -fx-text-alignment: center; -fx-background-radius: 8; "
+                + "-fx-text-fill: #323437; -fx-background-color: "
+                + (count < MIN_SAMPLES ? "#e5e7eb" : heatColor(valueFor(c), best, worst)) + ";");
+        key.setTooltip(new Tooltip(String.format("%d typed, %.1f%% errors, %.0f ms average",
+                count, keyStats.keyErrorRate(c) * 100, keyStats.keyAverageMillis(c))));
+        return key;
+    }
+
+    private double valueFor(char c) {
+        return showErrors ? keyStats.keyErrorRate(c) : keyStats.keyAverageMillis(c);
+    }
+
+    // Green for the best key through yellow to red for the worst
+    private String heatColor(double value, double best, double worst) {
+        double t = worst > best ? (value - best) / (worst - best) : 0;
+        double hue = 120 * (1 - t);
+        return String.format("hsb(%.0f, 55%%, 95%%)", hue);
+    }
+
+    private void showSlowestBigrams() {
+        bigramBox.getChildren().clear();
+
+        int[] slowest = keyStats.slowestBigrams(10, MIN_SAMPLES);
+        if (slowest.length == 0) {
+            Label empty = new Label("Keep typing to find your slowest transitions");
+            empty.setStyle("-fx-font-size: 14px; -fx-text-fill: #646669;");
+            bigramBox.getChildren().add(empty);
+            return;
+        }
+
+        for (int bigram : slowest) {
+            String pair = KeyStats.bigramText(bigram).replace(' ', '␣');
+            Label row = new Label(String.format("%s   %.0f ms   %.1f%% errors   (%d times)",
+                    pair, keyStats.bigramAverageMillis(bigram),
+                    keyStats.bigramErrorRate(bigram) * 100, keyStats.bigramCount(bigram)));
+            row.setStyle("-fx-font-size: 15px; -fx-font-family: monospace; -fx-text-fill: #323437;");
+            bigramBox.getChildren().add(row);
+        }
+    }
+
+    private void toggleDarkMode() {
+        isDarkMode = !isDarkMode;
+
+        if (isDarkMode) {
+            darkModeBtn.setText("☀️");
+            rootVBox.setStyle("-fx-background-color: #323437; -fx-padding: 40;");
+        } else {
+            darkModeBtn.setText("🌙");
+            rootVBox.setStyle("-fx-background-color: #f5f7fa; -fx-padding: 40;");
+        }
+    }
+
+    private void goBackToProgress() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("progress-view.fxml"));
+            Scene scene = new Scene(loader.load());
+
+            ProgressController controller = loader.getController();
+            controller.setCurrentUser(currentUsername);
+
+            Stage stage = (Stage) rootVBox.getScene().getWindow();
+            stage.setScene(scene);
+            stage.setMaximized(true);
+            stage.setTitle("Keyy - My Progress");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
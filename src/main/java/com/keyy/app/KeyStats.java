@@ -0,0 +1,274 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Per-key and per-bigram latency and error counts.
+// Keys are the printable ASCII characters, indexed by char code, and a bigram
+// is the pair of expected characters on either side of a keystroke. Latency
+// is the time since the previous keystroke, counted into a fixed set of
+// buckets as well as summed, so every update is a handful of array writes.
+//
+// File layout: int magic | short version | short buckets, then for every key
+// int count | int errors | long latency micros | int[buckets] histogram, then
+// int bigrams followed by that many short index | the same per-key fields.
+// Only bigrams that have been typed are written.
+public class KeyStats {
+    public static final String EXTENSION = ".keys";
+
+    static final int FIRST_CHAR = 32;
+    static final int KEYS = 127 - FIRST_CHAR;
+    static final int BIGRAMS = KEYS * KEYS;
+
+    // Upper bounds of the latency buckets in milliseconds; the last bucket is open
+    static final int[] BUCKET_MILLIS = {50, 100, 150, 200, 300, 500, 1000};
+    static final int BUCKETS = BUCKET_MILLIS.length + 1;
+
+    // Longer gaps are pauses, not typing, and are left out of the latencies
+    private static final long MAX_LATENCY_NANOS = 2_000_000_000L;
+
+    private static final int MAGIC = 0x4B594B53; // "KYKS"
+    private static final short VERSION = 1;
+
+    private final int[] keyCount = new int[KEYS];
+    private final int[] keyErrors = new int[KEYS];
+    private final long[] keyLatencyMicros = new long[KEYS];
+    private final int[] keyTimed = new int[KEYS];
+    private final int[] keyHistogram = new int[KEYS * BUCKETS];
+
+    private final int[] bigramCount = new int[BIGRAMS];
+    private final int[] bigramErrors = new int[BIGRAMS];
+    private final long[] bigramLatencyMicros = new long[BIGRAMS];
+    private final int[] bigramTimed = new int[BIGRAMS];
+    private final int[] bigramHistogram = new int[BIGRAMS * BUCKETS];
+
+    // Previous keystroke of the current run, -1 after a break
+    private int previousKey = -1;
+    private long previousNanos;
+
+    // Count one typed character against the character that was expected
+    public void keystroke(long nanos, char expected, boolean correct) {
+        int key = keyIndex(expected);
+        if (key < 0) {
+            previousKey = -1;
+            return;
+        }
+
+        keyCount[key]++;
+        if (!correct) keyErrors[key]++;
+
+        if (previousKey >= 0) {
+            int bigram = previousKey * KEYS + key;
+            bigramCount[bigram]++;
+            if (!correct) bigramErrors[bigram]++;
+
+            long latency = nanos - previousNanos;
+            if (latency > 0 && latency <= MAX_LATENCY_NANOS) {
+                long micros = latency / 1000;
+                int bucket = bucket(micros / 1000);
+
+                keyLatencyMicros[key] += micros;
+                keyTimed[key]++;
+                keyHistogram[key * BUCKETS + bucket]++;
+
+                bigramLatencyMicros[bigram] += micros;
+                bigramTimed[bigram]++;
+                bigramHistogram[bigram * BUCKETS + bucket]++;
+            }
+        }
+
+        previousKey = key;
+        previousNanos = nanos;
+    }
+
+    // Start a new run, e.g. after a backspace, so the next key has no latency
+    public void breakChain() {
+        previousKey = -1;
+    }
+
+    // Add another set of counts to this one
+    public void merge(KeyStats other) {
+        add(keyCount, other.keyCount);
+        add(keyErrors, other.keyErrors);
+        add(keyLatencyMicros, other.keyLatencyMicros);
+        add(keyTimed, other.keyTimed);
+        add(keyHistogram, other.keyHistogram);
+        add(bigramCount, other.bigramCount);
+        add(bigramErrors, other.bigramErrors);
+        add(bigramLatencyMicros, other.bigramLatencyMicros);
+        add(bigramTimed, other.bigramTimed);
+        add(bigramHistogram, other.bigramHistogram);
+    }
+
+    public boolean isEmpty() {
+        for (int count : keyCount) {
+            if (count > 0) return false;
+        }
+        return true;
+    }
+
+    public int keyCount(char c) {
+        int key = keyIndex(c);
+        return key < 0 ? 0 : keyCount[key];
+    }
+
+    public double keyErrorRate(char c) {
+        int key = keyIndex(c);
+        return key < 0 || keyCount[key] == 0 ? 0 : (double) keyErrors[key] / keyCount[key];
+    }
+
+    // Average milliseconds from the previous keystroke, 0 if never timed
+    public double keyAverageMillis(char c) {
+        int key = keyIndex(c);
+        return key < 0 || keyTimed[key] == 0 ? 0 : keyLatencyMicros[key] / 1000.0 / keyTimed[key];
+    }
+
+    public int keyHistogram(char c, int bucket) {
+        int key = keyIndex(c);
+        return key < 0 ? 0 : keyHistogram[key * BUCKETS + bucket];
+    }
+
+    // Bigrams typed at least minCount times, slowest first
+    public int[] slowestBigrams(int limit, int minCount) {
+        Integer[] candidates = new Integer[BIGRAMS];
+        int found = 0;
+        for (int i = 0; i < BIGRAMS; i++) {
+            if (bigramTimed[i] >= minCount) candidates[found++] = i;
+        }
+        Arrays.sort(candidates, 0, found, (a, b) -> Double.compare(bigramAverageMillis(b), bigramAverageMillis(a)));
+
+        int[] slowest = new int[Math.min(limit, found)];
+        for (int i = 0; i < slowest.length; i++) {
+            slowest[i] = candidates[i];
+        }
+        return slowest;
+    }
+
+    public static String bigramText(int bigram) {
+        return new String(new char[] {
+                (char) (FIRST_CHAR + bigram / KEYS), (char) (FIRST_CHAR + bigram % KEYS)});
+    }
+
+    public int bigramCount(int bigram) {
+        return bigramCount[bigram];
+    }
+
+    public double bigramErrorRate(int bigram) {
+        return bigramCount[bigram] == 0 ? 0 : (double) bigramErrors[bigram] / bigramCount[bigram];
+    }
+
+    public double bigramAverageMillis(int bigram) {
+        return bigramTimed[bigram] == 0 ? 0 : bigramLatencyMicros[bigram] / 1000.0 / bigramTimed[bigram];
+    }
+
+    // Atomically replace the file with these counts
+    public void write(Path file) throws IOException {
+        int entrySize = 16 + 4 * BUCKETS;
+        int bigrams = 0;
+        for (int i = 0; i < BIGRAMS; i++) {
+            if (bigramCount[i] > 0) bigrams++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + KEYS * entrySize + 4 + bigrams * (2 + entrySize));
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) BUCKETS);
+        for (int key = 0; key < KEYS; key++) {
+            putEntry(buffer, keyCount[key], keyErrors[key], keyLatencyMicros[key],
+                    keyHistogram, key * BUCKETS);
+        }
+        buffer.putInt(bigrams);
+        for (int i = 0; i < BIGRAMS; i++) {
+            if (bigramCount[i] == 0) continue;
+            buffer.putShort((short) i);
+            putEntry(buffer, bigramCount[i], bigramErrors[i], bigramLatencyMicros[i],
+                    bigramHistogram, i * BUCKETS);
+        }
+        buffer.flip();
+        ScoreLog.replace(file, buffer);
+    }
+
+    // Counts saved by write(), or empty counts if there is no file yet
+    public static KeyStats read(Path file) throws IOException {
+        KeyStats stats = new KeyStats();
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return stats;
+        }
+
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC
+                || buffer.getShort() != VERSION || buffer.getShort() != BUCKETS) {
+            throw new IOException("Not a key stats file: " + file);
+        }
+        for (int key = 0; key < KEYS; key++) {
+            keyCountsFrom(buffer, stats.keyCount, stats.keyErrors, stats.keyLatencyMicros, stats.keyTimed,
+                    stats.keyHistogram, key);
+        }
+        int bigrams = buffer.getInt();
+        for (int i = 0; i < bigrams; i++) {
+            int bigram = buffer.getShort() & 0xFFFF;
+            if (bigram >= BIGRAMS) {
+                throw new IOException("Corrupt key stats file: " + file);
+            }
+            keyCountsFrom(buffer, stats.bigramCount, stats.bigramErrors, stats.bigramLatencyMicros,
+                    stats.bigramTimed, stats.bigramHistogram, bigram);
+        }
+        return stats;
+    }
+
+    // The timed count is the histogram total, so it is not stored
+    private static void putEntry(ByteBuffer buffer, int count, int errors, long micros,
+                                 int[] histogram, int offset) {
+        buffer.putInt(count).putInt(errors).putLong(micros);
+        for (int b = 0; b < BUCKETS; b++) {
+            buffer.putInt(histogram[offset + b]);
+        }
+    }
+
+    private static void keyCountsFrom(ByteBuffer buffer, int[] count, int[] errors, long[] micros,
+                                      int[] timed, int[] histogram, int index) {
+        count[index] = buffer.getInt();
+        errors[index] = buffer.getInt();
+        micros[index] = buffer.getLong();
+        for (int b = 0; b < BUCKETS; b++) {
+            histogram[index * BUCKETS + b] = buffer.getInt();
+        }
+        timed[index] = sum(histogram, index * BUCKETS);
+    }
+
+    private static int sum(int[] histogram, int offset) {
+        int total = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            total += histogram[offset + b];
+        }
+        return total;
+    }
+
+    private static int keyIndex(char c) {
+        int key = c - FIRST_CHAR;
+        return key >= 0 && key < KEYS ? key : -1;
+    }
+
+    private static int bucket(long millis) {
+        for (int b = 0; b < BUCKET_MILLIS.length; b++) {
+            if (millis < BUCKET_MILLIS[b]) return b;
+        }
+        return BUCKET_MILLIS.length;
+    }
+
+    private static void add(int[] into, int[] from) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] += from[i];
+        }
+    }
+
+    private static void add(long[] into, long[] from) {
+        for (int i = 0; i < into.length; i++) {
+            into[i] += from[i];
+        }
+    }
+}
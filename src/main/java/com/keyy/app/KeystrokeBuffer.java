@@ -0,0 +1,81 @@
+package com.keyy.app;
+
+// Every keystroke of the current test, stored as parallel primitive arrays.
+// The arrays are allocated once and reused by clear(), so recording on the FX
+// thread never allocates or boxes. When more keystrokes arrive than fit, the
+// oldest are overwritten.
+public class KeystrokeBuffer {
+    public static final byte CORRECT = 1;
+    public static final byte BACKSPACE = 2;
+
+    private final long[] times;
+    private final char[] typed;
+    private final char[] expected;
+    private final byte[] flags;
+    private final int mask;
+
+    // Keystrokes recorded since the last clear(), including overwritten ones
+    private long count;
+
+    // Capacity is rounded up to a power of two
+    public KeystrokeBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        times = new long[size];
+        typed = new char[size];
+        expected = new char[size];
+        flags = new byte[size];
+        mask = size - 1;
+    }
+
+    // Record one keystroke; nanos comes from System.nanoTime()
+    public void record(long nanos, char typedChar, char expectedChar, byte flag) {
+        int slot = (int) (count & mask);
+        times[slot] = nanos;
+        typed[slot] = typedChar;
+        expected[slot] = expectedChar;
+        flags[slot] = flag;
+        count++;
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // Keystrokes currently held, at most the capacity
+    public int size() {
+        return (int) Math.min(count, times.length);
+    }
+
+    public long totalRecorded() {
+        return count;
+    }
+
+    // Accessors take 0 for the oldest keystroke held and size() - 1 for the newest
+
+    public long time(int index) {
+        return times[slot(index)];
+    }
+
+    public char typed(int index) {
+        return typed[slot(index)];
+    }
+
+    public char expected(int index) {
+        return expected[slot(index)];
+    }
+
+    public boolean isCorrect(int index) {
+        return (flags[slot(index)] & CORRECT) != 0;
+    }
+
+    public boolean isBackspace(int index) {
+        return (flags[slot(index)] & BACKSPACE) != 0;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Keystroke " + index + " of " + size());
+        }
+        return (int) ((count - size() + index) & mask);
+    }
+}
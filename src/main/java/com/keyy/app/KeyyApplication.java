@@ -27,6 +27,12 @@ public class KeyyApplication extends Application {
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        // Flush scores still waiting in the write-behind queue
+        UserManager.shutdown();
+    }
+
     public static void main(String[] args) {
         launch();
     }
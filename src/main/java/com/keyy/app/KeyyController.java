@@ -1,5 +1,6 @@
 package com.keyy.app;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -15,22 +16,23 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 public class KeyyController {
 
     @FXML
     private VBox rootVBox;
     @FXML
-    private TextFlow textFlow;
+    private TypingSurface typingSurface;
     @FXML
     private Label timerLabel;
     @FXML
@@ -38,18 +40,51 @@ public class KeyyController {
     @FXML
     private VBox typingContainer;
 
-    private String[] sentences = {
-            "late out house consider order hold or off year new great keep each those present no right for up also late course think thing system in govern move ask face both you other show against of man",
-            "the quick brown fox jumps over the lazy dog and runs through the dense forest with incredible speed",
-            "programming requires patience practice and dedication to master the art of writing clean efficient code",
-            "artificial intelligence is transforming the way we live work and interact with technology every single day",
-            "type faster and more accurately to improve your productivity and efficiency in everyday tasks online",
-            "good communication skills are essential for success in both personal and professional relationships worldwide"
-    };
+    // Timed tests stream words instead of typing one sentence
+    private static final int LOOKAHEAD_CHARS = 160;
+
+    private int testDuration = 0; // seconds, 0 = untimed single sentence
+    private WordGenerator words;
+
+    // Weak-key practice: the user's key totals so far and the word picker aimed at them
+    private WeakKeyTrainer trainer;
+    private KeyStats practiceTotals;
+    private boolean testOver = false;
+
+    // Room for a 60 second test at well over 200 WPM
+    private final KeystrokeBuffer keystrokes = new KeystrokeBuffer(4096);
+
+    // Handed to the I/O thread when the test is saved, so each test gets a fresh one
+    private KeyStats keyStats = new KeyStats();
+
+    // The finished test's keystrokes, for the replay screen
+    private Replay lastReplay;
+    private ReplayPlayer replayPlayer;
+
+    // Ghost race: the best earlier run's caret, moved every frame once typing starts
+    private static final int GHOST_MARKER = 0;
+    private boolean ghostRace = false;
+    private GhostCaret ghost;
+    private AnimationTimer ghostTimer;
+    private double ghostWpm = -1; // of the ghost raced in the last test
+
+    // Local race: the connection, this racer's id, the shared passage, and a
+    // marker slot for each opponent shown on the surface (slot 0 is the ghost's)
+    private RaceClient race;
+    private boolean raceMode = false;
+    private boolean raceWaiting = false;
+    private int raceId;
+    private String racePassage;
+    private int racePlace = 0;
+    private final Map<Integer, String> raceNames = new HashMap<>();
+    private final Map<Integer, Integer> raceMarkers = new HashMap<>();
+    private Timeline raceCountdown;
+    private Label raceLabel;
+
+    // Characters of a timed test that have scrolled off the top of the surface
+    private int windowStart = 0;
 
-    private String currentSentence;
     private int currentIndex = 0;
-    private int correctChars = 0;
     private int totalKeyPresses = 0;
     private int mistakeCount = 0;
     private int backspaceCount = 0;
@@ -64,23 +99,21 @@ public class KeyyController {
 
     private String currentUsername = null;
 
-    // For WPM tracking over time
-    private List<Double> wpmHistory = new ArrayList<>();
-    private List<Integer> timeHistory = new ArrayList<>();
+    // The result screen is shown again when leaving the Dominance screen
+    private boolean resultSaved = false;
 
-    // World average WPM
-    private final double WORLD_AVG_WPM = 41.0;
+    // For WPM tracking over time
+    private final TypingClock clock = new TypingClock();
+    private final WpmSeries wpmSeries = new WpmSeries();
 
     // Color schemes
     private final String LIGHT_BG = "#f5f7fa";
     private final String LIGHT_TEXT = "#646669";
     private final String LIGHT_UNTYPED = "#4a4a4a";
-    private final String LIGHT_TYPED_CORRECT = "#d4d4d8";
 
     private final String DARK_BG = "#323437";
     private final String DARK_TEXT = "#646669";
     private final String DARK_UNTYPED = "#d1d0c5";
-    private final String DARK_TYPED_CORRECT = "#646669";
 
     @FXML
     public void initialize() {
@@ -96,7 +129,7 @@ public class KeyyController {
         darkModeBtn.setOnAction(e -> toggleDarkMode());
 
         // Scene ready → key listener attach
-        textFlow.sceneProperty().addListener((obs, oldScene, newScene) -> {
+        typingSurface.sceneProperty().addListener((obs, oldScene, newScene) -> {
             if (oldScene != null) {
                 oldScene.removeEventFilter(KeyEvent.KEY_TYPED, keyEventHandler);
             }
@@ -111,6 +144,227 @@ public class KeyyController {
         this.currentUsername = username;
     }
 
+    // Switch to a timed test that ends after the given number of seconds
+    public void setTestDuration(int seconds) {
+        this.testDuration = seconds;
+        if (seconds > 0 && words == null) {
+            words = new WordGenerator(Corpus.words(), random);
+        }
+        loadNextSentence();
+    }
+
+    // Timed practice weighted toward the user's slowest and most missed keys.
+    // Plain words are shown until the user's key stats have loaded.
+    public void setPracticeMode(int seconds) {
+        setTestDuration(seconds);
+
+        String username = currentUsername;
+        AsyncUserManager.onFxThread(AsyncUserManager.supply(() -> {
+            WeakKeyTrainer loaded = new WeakKeyTrainer(Corpus.words());
+            KeyStats totals = username == null ? new KeyStats() : UserManager.getKeyStats(username);
+            loaded.retarget(totals);
+            return Map.entry(loaded, totals);
+        }), loaded -> {
+            trainer = loaded.getKey();
+            practiceTotals = loaded.getValue();
+            words = new WordGenerator(Corpus.words(), trainer::sample, random);
+            if (!timerStarted) loadNextSentence();
+        });
+    }
+
+    // Timed test raced against the user's fastest recorded run of the same length.
+    // The ghost appears once the replay has loaded, if typing has not started yet.
+    public void setGhostRace(int seconds) {
+        setTestDuration(seconds);
+        ghostRace = true;
+
+        String username = currentUsername;
+        if (username == null) return;
+        AsyncUserManager.onFxThread(AsyncUserManager.supply(() -> {
+            Replay best = UserManager.getBestReplay(username, seconds);
+            return best == null ? null : new GhostCaret(best);
+        }), loaded -> {
+            // A test finished before the load may already have set a faster ghost
+            if (loaded == null || (ghost != null && ghost.replay().wpm() >= loaded.replay().wpm())) return;
+            raceGhost(loaded);
+            if (!timerStarted) loadNextSentence();
+        });
+    }
+
+    private void raceGhost(GhostCaret caret) {
+        ghost = caret;
+        if (ghostTimer == null) {
+            ghostTimer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    moveGhost(System.nanoTime());
+                }
+            };
+        }
+    }
+
+    // Race whoever else joins on this machine over one shared passage. The
+    // first Keyy instance to open a race hosts the server for the others.
+    public void setRaceMode() {
+        raceMode = true;
+        testDuration = 0;
+        joinRace();
+    }
+
+    private void joinRace() {
+        closeRace();
+        racePassage = null;
+        racePlace = 0;
+        raceNames.clear();
+        raceMarkers.clear();
+        raceWaiting = true;
+        typingSurface.setText("");
+        timerLabel.setText("Joining race…");
+
+        RaceServer.startLocal();
+        try {
+            race = new RaceClient("localhost", RaceProtocol.DEFAULT_PORT,
+                    currentUsername, new RaceListener(), AsyncUserManager.FX);
+        } catch (IOException e) {
+            e.printStackTrace();
+            timerLabel.setText("Race server unavailable, retrying…");
+            retryRaceLater();
+        }
+    }
+
+    private void retryRaceLater() {
+        raceCountdown = new Timeline(new KeyFrame(Duration.seconds(3), e -> {
+            if (raceMode && race == null) joinRace();
+        }));
+        raceCountdown.play();
+    }
+
+    // Stop racing for good when leaving the typing screen
+    private void leaveRace() {
+        raceMode = false;
+        closeRace();
+    }
+
+    private void closeRace() {
+        if (raceCountdown != null) raceCountdown.stop();
+        if (race != null) {
+            race.close();
+            race = null;
+        }
+    }
+
+    // Receives race updates on the FX thread, ignoring a connection that has been replaced
+    private class RaceListener implements RaceClient.Listener {
+        private boolean current() {
+            return race != null && race.isListener(this);
+        }
+
+        @Override
+        public void welcome(int id, String passage, long millisUntilStart) {
+            if (!current()) return;
+            raceId = id;
+            racePassage = passage;
+            loadNextSentence();
+
+            long startAt = System.nanoTime() + millisUntilStart * 1_000_000;
+            raceCountdown = new Timeline(new KeyFrame(Duration.millis(100), e -> {
+                long left = (startAt - System.nanoTime() + 999_999_999) / 1_000_000_000;
+                timerLabel.setText("Race starts in " + Math.max(1, left));
+            }));
+            raceCountdown.setCycleCount(Timeline.INDEFINITE);
+            raceCountdown.play();
+        }
+
+        @Override
+        public void racerJoined(int id, String name) {
+            if (!current()) return;
+            raceNames.put(id, name);
+            if (id != raceId && raceMarkers.size() < TypingSurface.MARKERS - 1) {
+                int slot = 1;
+                while (raceMarkers.containsValue(slot)) slot++;
+                raceMarkers.put(id, slot);
+                typingSurface.setMarker(slot, 0, 0);
+            }
+        }
+
+        @Override
+        public void racerLeft(int id) {
+            if (!current()) return;
+            raceNames.remove(id);
+            Integer slot = raceMarkers.remove(id);
+            if (slot != null) typingSurface.setMarker(slot, -1, 0);
+        }
+
+        @Override
+        public void started() {
+            if (!current()) return;
+            raceCountdown.stop();
+            raceWaiting = false;
+            timerLabel.setText("Go!");
+        }
+
+        @Override
+        public void positions(int[] idsAndPositions) {
+            if (!current() || testOver) return;
+            for (int i = 0; i < idsAndPositions.length; i += 2) {
+                Integer slot = raceMarkers.get(idsAndPositions[i]);
+                if (slot != null) typingSurface.setMarker(slot, idsAndPositions[i + 1], 0);
+            }
+        }
+
+        @Override
+        public void finished(int id, int place, double wpm) {
+            if (!current()) return;
+            if (id == raceId) {
+                racePlace = place;
+                updateRaceLabel();
+            }
+        }
+
+        @Override
+        public void ended(IOException error) {
+            if (!current()) return;
+            race = null;
+            if (raceCountdown != null) raceCountdown.stop();
+
+            if (raceWaiting) {
+                // Refused while another race was running, or the host went away
+                timerLabel.setText("Waiting for the next race…");
+                retryRaceLater();
+            } else if (!testOver && clock.isStarted()) {
+                // Time ran out before the passage was finished
+                clock.finish(System.nanoTime());
+                showResultScreen();
+            }
+        }
+    }
+
+    private void updateRaceLabel() {
+        if (raceLabel == null) return;
+        raceLabel.setText(racePlace > 0
+                ? String.format("🏁 You finished %s of %d", ordinal(racePlace), raceNames.size())
+                : "🏁 Waiting for the other racers…");
+    }
+
+    private static String ordinal(int place) {
+        int lastTwo = place % 100;
+        if (lastTwo >= 11 && lastTwo <= 13) return place + "th";
+        switch (place % 10) {
+            case 1: return place + "st";
+            case 2: return place + "nd";
+            case 3: return place + "rd";
+            default: return place + "th";
+        }
+    }
+
+    // Follow the ghost's run from the user's first keystroke
+    private void moveGhost(long now) {
+        ghost.advance(now - clock.startNanos());
+        int index = ghost.position() - windowStart;
+        typingSurface.setMarker(GHOST_MARKER, index >= 0 ? index : -1, ghost.fraction());
+        if (ghost.isFinished()) ghostTimer.stop();
+    }
+
     private void toggleDarkMode() {
         isDarkMode = !isDarkMode;
 
@@ -124,142 +378,187 @@ public class KeyyController {
             timerLabel.setStyle("-fx-font-size: 32px; -fx-font-weight: bold; -fx-text-fill: #e2b714;");
         }
 
-        updateTextColors();
-    }
-
-    private void updateTextColors() {
-        String untypedColor = isDarkMode ? DARK_UNTYPED : LIGHT_UNTYPED;
-        String typedCorrectColor = isDarkMode ? DARK_TYPED_CORRECT : LIGHT_TYPED_CORRECT;
-
-        for (int i = 0; i < textFlow.getChildren().size(); i++) {
-            Text txt = (Text) textFlow.getChildren().get(i);
-            String style = txt.getStyle();
-
-            if (style.contains("#f87171") || style.contains("red")) {
-                // Wrong - keep red
-                txt.setStyle("-fx-fill: #f87171; -fx-font-size: 24px;" + (i == currentIndex ? " -fx-underline: true;" : ""));
-            } else if (i < currentIndex) {
-                // Typed correctly - gray/dim color
-                txt.setStyle("-fx-fill: " + typedCorrectColor + "; -fx-font-size: 24px;");
-            } else if (i == currentIndex) {
-                // Current position - highlighted
-                txt.setStyle("-fx-fill: " + untypedColor + "; -fx-font-size: 24px; -fx-underline: true;");
-            } else {
-                // Not typed yet
-                txt.setStyle("-fx-fill: " + untypedColor + "; -fx-font-size: 24px;");
-            }
-        }
+        typingSurface.setDarkMode(isDarkMode);
     }
 
     private void loadNextSentence() {
-        if (sentences.length == 0) return;
-
-        currentSentence = sentences[random.nextInt(sentences.length)];
-        textFlow.getChildren().clear();
-
-        String untypedColor = isDarkMode ? DARK_UNTYPED : LIGHT_UNTYPED;
-
-        for (char c : currentSentence.toCharArray()) {
-            Text t = new Text(String.valueOf(c));
-            t.setStyle("-fx-fill: " + untypedColor + "; -fx-font-size: 24px;");
-            textFlow.getChildren().add(t);
+        currentIndex = 0;
+        windowStart = 0;
+        keystrokes.clear();
+        if (!keyStats.isEmpty()) keyStats = new KeyStats();
+        if (testDuration > 0) {
+            typingSurface.setText("");
+            if (ghost != null) {
+                // Race over the ghost's own words, then carry on with new ones
+                String passage = ghost.passage();
+                typingSurface.append(passage);
+                if (!passage.endsWith(" ")) typingSurface.append(" ");
+                ghost.reset();
+                typingSurface.setMarker(GHOST_MARKER, 0, 0);
+            }
+            fillAhead();
+        } else if (raceMode) {
+            typingSurface.setText(racePassage != null ? racePassage : "");
+        } else {
+            Corpus quotes = Corpus.quotes();
+            typingSurface.setText(quotes.get(quotes.sample(random)));
         }
 
-        currentIndex = 0;
-        correctChars = 0;
         totalKeyPresses = 0;
         mistakeCount = 0;
         backspaceCount = 0;
-        wpmHistory.clear();
-        timeHistory.clear();
+        clock.reset();
+        wpmSeries.clear();
+        resultSaved = false;
+        testOver = false;
 
         timerInSecondsReset();
-        updateCursor();
     }
 
     private void startTimer() {
         timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> {
             timeInSeconds++;
-            timerLabel.setText(String.valueOf(timeInSeconds));
+            timerLabel.setText(String.valueOf(testDuration > 0 ? testDuration - timeInSeconds : timeInSeconds));
 
             // Track WPM every second
-            double currentWPM = calculateCurrentWPM();
-            wpmHistory.add(currentWPM);
-            timeHistory.add(timeInSeconds);
+            long now = System.nanoTime();
+            wpmSeries.add((now - clock.startNanos()) / 1e9, clock.windowWpm(now));
+
+            if (testDuration > 0 && timeInSeconds >= testDuration) {
+                finishAtDeadline();
+            }
         }));
         timeline.setCycleCount(Timeline.INDEFINITE);
         timeline.play();
         timerStarted = true;
+        if (ghostTimer != null) ghostTimer.start();
     }
 
     private void timerInSecondsReset() {
         if (timeline != null) timeline.stop();
+        if (ghostTimer != null) ghostTimer.stop();
         timeInSeconds = 0;
-        timerLabel.setText("0");
+        timerLabel.setText(String.valueOf(testDuration));
         timerStarted = false;
     }
 
-    private double calculateCurrentWPM() {
-        double minutes = timeInSeconds / 60.0;
-        return minutes > 0 ? (correctChars / 5.0) / minutes : 0;
+    // End a timed test exactly at its deadline, whenever the tick or key arrives
+    private void finishAtDeadline() {
+        clock.finish(clock.startNanos() + testDuration * 1_000_000_000L);
+        showResultScreen();
     }
 
     private void handleKey(KeyEvent event) {
+        long now = System.nanoTime();
         event.consume();
 
-        if (!timerStarted) startTimer();
+        if (testOver || raceWaiting) return;
 
         String character = event.getCharacter();
+        if (character.isEmpty()) return;
+
+        if (testDuration > 0 && clock.isStarted()
+                && now - clock.startNanos() >= testDuration * 1_000_000_000L) {
+            finishAtDeadline();
+            return;
+        }
+        clock.start(now);
+        if (!timerStarted) startTimer();
 
         if (character.equals("\b")) { // Backspace
             if (currentIndex > 0) {
                 currentIndex--;
                 backspaceCount++;
-                Text t = (Text) textFlow.getChildren().get(currentIndex);
-
-                String untypedColor = isDarkMode ? DARK_UNTYPED : LIGHT_UNTYPED;
-                t.setStyle("-fx-fill: " + untypedColor + "; -fx-font-size: 24px;");
+                keystrokes.record(now, '\b', typingSurface.charAt(currentIndex), KeystrokeBuffer.BACKSPACE);
+                keyStats.breakChain();
 
-                updateCursor();
+                typingSurface.setState(currentIndex, TypingSurface.UNTYPED);
+                typingSurface.setCursor(currentIndex);
+                if (race != null) race.progress(currentIndex);
             }
             return;
         }
 
-        if (currentIndex >= currentSentence.length()) return;
+        if (currentIndex >= typingSurface.length()) return;
 
         totalKeyPresses++;
-        Text t = (Text) textFlow.getChildren().get(currentIndex);
 
-        if (character.charAt(0) == currentSentence.charAt(currentIndex)) {
-            String typedCorrectColor = isDarkMode ? DARK_TYPED_CORRECT : LIGHT_TYPED_CORRECT;
-            t.setStyle("-fx-fill: " + typedCorrectColor + "; -fx-font-size: 24px;");
-            correctChars++;
+        char typed = character.charAt(0);
+        char expected = typingSurface.charAt(currentIndex);
+        if (typed == expected) {
+            typingSurface.setState(currentIndex, TypingSurface.CORRECT);
         } else {
-            t.setStyle("-fx-fill: #f87171; -fx-font-size: 24px;");
+            typingSurface.setState(currentIndex, TypingSurface.WRONG);
             mistakeCount++;
         }
+        keystrokes.record(now, typed, expected, typed == expected ? KeystrokeBuffer.CORRECT : 0);
+        clock.keystroke(now, typed == expected);
+        keyStats.keystroke(now, expected, typed == expected);
 
         currentIndex++;
-        updateCursor();
-
-        if (currentIndex == currentSentence.length()) {
+        typingSurface.setCursor(currentIndex);
+        if (race != null) race.progress(currentIndex);
+
+        if (testDuration > 0) {
+            // Once the cursor reaches the third line, recycle the first one
+            if (typingSurface.rowOf(currentIndex) >= 2) {
+                int dropped = typingSurface.dropLines(1);
+                currentIndex -= dropped;
+                windowStart += dropped;
+            }
+            fillAhead();
+        } else if (currentIndex == typingSurface.length()) {
+            clock.finish(now);
             showResultScreen();
         }
     }
 
-    private void updateCursor() {
-        updateTextColors();
+    // Keep a few lines of words queued up ahead of the cursor
+    private void fillAhead() {
+        while (typingSurface.length() - currentIndex < LOOKAHEAD_CHARS) {
+            typingSurface.append(words.next());
+            typingSurface.append(" ");
+        }
     }
 
     private void showResultScreen() {
         if (timeline != null) timeline.stop();
+        if (ghostTimer != null) ghostTimer.stop();
+        if (!testOver) {
+            // Close the graph with the final reading
+            clock.finish(System.nanoTime());
+            wpmSeries.add(clock.elapsedSeconds(), clock.netWpm());
+            testOver = true;
+            ghostWpm = ghost != null ? ghost.replay().wpm() : -1;
+            lastReplay = Replay.capture(keystrokes, (float) clock.netWpm(), testDuration);
+
+            // A new best becomes the ghost for the next race, as does the
+            // first run when there was no earlier one to race
+            if (ghostRace && lastReplay != null && (ghost == null || lastReplay.wpm() > ghostWpm)) {
+                raceGhost(new GhostCaret(lastReplay));
+            }
 
-        double finalWPM = calculateCurrentWPM();
+            // Aim the next practice run at the keys that are weakest now
+            if (trainer != null) {
+                practiceTotals.merge(keyStats);
+                trainer.retarget(practiceTotals);
+            }
+        }
+
+        double finalWPM = clock.netWpm();
+        double rawWPM = clock.rawWpm();
+        double elapsedSeconds = clock.elapsedSeconds();
         double accuracyValue = totalKeyPresses > 0 ? ((double)(totalKeyPresses - mistakeCount) / totalKeyPresses) * 100 : 100;
 
-        // Save score to file
-        if (currentUsername != null) {
-            UserManager.saveScore(currentUsername, finalWPM, accuracyValue, timeInSeconds);
+        // Save score to file in the background, once per test
+        CompletableFuture<Void> saved = CompletableFuture.completedFuture(null);
+        if (currentUsername != null && !resultSaved) {
+            saved = AsyncUserManager.saveScore(currentUsername, finalWPM, accuracyValue, (int) Math.round(elapsedSeconds));
+            AsyncUserManager.saveKeyStats(currentUsername, keyStats);
+            if (lastReplay != null) {
+                AsyncUserManager.saveReplay(currentUsername, lastReplay);
+            }
+            resultSaved = true;
         }
 
         rootVBox.getChildren().clear();
@@ -294,31 +593,31 @@ public class KeyyController {
         errorsText.setStyle("-fx-font-size: 16px; -fx-text-fill: " + (isDarkMode ? DARK_TEXT : LIGHT_TEXT) + ";");
         errorsBox.getChildren().addAll(errorsCount, errorsText);
 
+        VBox rawBox = new VBox(5);
+        rawBox.setAlignment(javafx.geometry.Pos.CENTER);
+        Label rawCount = new Label(String.format("%.0f", rawWPM));
+        rawCount.setStyle("-fx-font-size: 32px; -fx-font-weight: bold; -fx-text-fill: " + (isDarkMode ? DARK_UNTYPED : LIGHT_UNTYPED) + ";");
+        Label rawText = new Label("Raw WPM");
+        rawText.setStyle("-fx-font-size: 16px; -fx-text-fill: " + (isDarkMode ? DARK_TEXT : LIGHT_TEXT) + ";");
+        rawBox.getChildren().addAll(rawCount, rawText);
+
         VBox timeBox = new VBox(5);
         timeBox.setAlignment(javafx.geometry.Pos.CENTER);
-        Label timeCount = new Label(timeInSeconds + "s");
+        Label timeCount = new Label(String.format("%.1fs", elapsedSeconds));
         timeCount.setStyle("-fx-font-size: 32px; -fx-font-weight: bold; -fx-text-fill: " + (isDarkMode ? DARK_UNTYPED : LIGHT_UNTYPED) + ";");
         Label timeText = new Label("Time");
         timeText.setStyle("-fx-font-size: 16px; -fx-text-fill: " + (isDarkMode ? DARK_TEXT : LIGHT_TEXT) + ";");
         timeBox.getChildren().addAll(timeCount, timeText);
 
-        statsBox.getChildren().addAll(errorsBox, timeBox);
+        statsBox.getChildren().addAll(errorsBox, rawBox, timeBox);
 
-        // Comparison with world average
-        double percentageBetter = ((finalWPM - WORLD_AVG_WPM) / WORLD_AVG_WPM) * 100;
-        double percentileBeaten = calculatePercentile(finalWPM);
-
-        Label comparisonLabel;
-        if (finalWPM >= WORLD_AVG_WPM) {
-            comparisonLabel = new Label(String.format("%.0f%% faster than average!", Math.abs(percentageBetter)));
-            comparisonLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: #4ade80; -fx-font-weight: bold;");
-        } else {
-            comparisonLabel = new Label(String.format("Keep practicing! Average is %.0f WPM", WORLD_AVG_WPM));
-            comparisonLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: #f87171; -fx-font-weight: bold;");
-        }
+        // Comparison with every result saved so far, filled in below
+        Label comparisonLabel = new Label("Comparing with everyone's results…");
+        comparisonLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: " + (isDarkMode ? DARK_TEXT : LIGHT_TEXT) + "; -fx-font-weight: bold;");
 
-        Label dominanceLabel = new Label(String.format("You can beat %.1f%% of typists!", percentileBeaten));
+        Label dominanceLabel = new Label();
         dominanceLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #e2b714; -fx-font-weight: bold;");
+        double[] percentileBeaten = {0};
 
         // Buttons
         HBox buttonBox = new HBox(15);
@@ -344,14 +643,46 @@ public class KeyyController {
         closeBtn.setFocusTraversable(false);
         closeBtn.setStyle("-fx-font-size: 18px; -fx-padding: 12 30; -fx-cursor: hand; -fx-background-color: #f87171; -fx-text-fill: white; -fx-background-radius: 8; -fx-font-weight: bold;");
 
-        retryBtn.setOnAction(e -> resetToTypingScreen());
-        dominanceBtn.setOnAction(e -> showDominanceScreen(finalWPM, accuracyValue, percentileBeaten));
+        retryBtn.setOnAction(e -> {
+            resetToTypingScreen();
+            if (raceMode) joinRace();
+        });
+        dominanceBtn.setOnAction(e -> showDominanceScreen(finalWPM, accuracyValue, percentileBeaten[0]));
         leaderboardBtn.setOnAction(e -> showLeaderboard());
         dashboardBtn.setOnAction(e -> goToDashboard());
         closeBtn.setOnAction(e -> Platform.exit());
 
         buttonBox.getChildren().addAll(retryBtn, dominanceBtn, leaderboardBtn, dashboardBtn, closeBtn);
 
+        // Asked once the save above has gone in, so this result is always in
+        // the sketch when it was saved; the sketch itself is read from memory
+        dominanceBtn.setDisable(true);
+        boolean counted = currentUsername != null;
+        AsyncUserManager.onFxThread(saved.thenApply(done -> new double[]{
+                        UserManager.getGlobalScoreCount(), UserManager.getGlobalAverageWPM(), UserManager.getPercentile(finalWPM)}),
+                distribution -> {
+                    boolean firstResult = distribution[0] <= (counted ? 1 : 0);
+                    double averageWpm = distribution[1];
+                    percentileBeaten[0] = firstResult ? 100.0 : distribution[2];
+
+                    if (firstResult) {
+                        comparisonLabel.setText("First result recorded — you set the pace!");
+                        comparisonLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: #4ade80; -fx-font-weight: bold;");
+                    } else if (averageWpm <= 0) {
+                        // Only zero-WPM results so far, nothing to compare with
+                        comparisonLabel.setText("");
+                    } else if (finalWPM >= averageWpm) {
+                        double percentageBetter = ((finalWPM - averageWpm) / averageWpm) * 100;
+                        comparisonLabel.setText(String.format("%.0f%% faster than average!", Math.abs(percentageBetter)));
+                        comparisonLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: #4ade80; -fx-font-weight: bold;");
+                    } else {
+                        comparisonLabel.setText(String.format("Keep practicing! Average is %.0f WPM", averageWpm));
+                        comparisonLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: #f87171; -fx-font-weight: bold;");
+                    }
+                    dominanceLabel.setText(String.format("You beat %.1f%% of all recorded results!", percentileBeaten[0]));
+                    dominanceBtn.setDisable(false);
+                });
+
         resultBox.getChildren().addAll(
                 wpmLabel, wpmText,
                 accuracyLabel, accText,
@@ -361,24 +692,42 @@ public class KeyyController {
                 buttonBox
         );
 
-        rootVBox.getChildren().add(resultBox);
-    }
+        if (ghostWpm >= 0) {
+            Label ghostLabel = new Label(finalWPM > ghostWpm
+                    ? String.format("👻 You beat your ghost by %.1f WPM!", finalWPM - ghostWpm)
+                    : String.format("👻 Your ghost won by %.1f WPM", ghostWpm - finalWPM));
+            ghostLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #3b82f6; -fx-font-weight: bold;");
+            resultBox.getChildren().add(resultBox.getChildren().size() - 1, ghostLabel);
+        }
+
+        if (raceMode) {
+            raceLabel = new Label();
+            raceLabel.setStyle("-fx-font-size: 20px; -fx-text-fill: #a855f7; -fx-font-weight: bold;");
+            updateRaceLabel();
+            resultBox.getChildren().add(resultBox.getChildren().size() - 1, raceLabel);
+        }
+
+        if (currentUsername != null) {
+            // Asked once the save above has gone in, so the rank includes this result
+            Label rankLabel = new Label("🌍 Global rank: …");
+            rankLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #f59e0b; -fx-font-weight: bold;");
+            resultBox.getChildren().add(resultBox.getChildren().size() - 1, rankLabel);
+
+            String username = currentUsername;
+            AsyncUserManager.onFxThread(saved.thenCompose(done -> AsyncUserManager.getRank(LeaderboardWindow.ALL_TIME, username))
+                    .thenCombine(AsyncUserManager.getLeaderboardSize(LeaderboardWindow.ALL_TIME), (rank, size) -> new int[]{rank, size}),
+                    rank -> rankLabel.setText(rank[0] > 0
+                            ? String.format("🌍 Global rank: #%,d of %,d", rank[0], rank[1])
+                            : "🌍 Global rank: —"));
+        }
+
+        if (trainer != null && trainer.hasTargets()) {
+            Label focusLabel = new Label("🧠 Next practice focuses on: " + String.join("  ", trainer.targetNames()));
+            focusLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #3b82f6; -fx-font-weight: bold;");
+            resultBox.getChildren().add(resultBox.getChildren().size() - 1, focusLabel);
+        }
 
-    private double calculatePercentile(double wpm) {
-
-        if (wpm >= 120) return 99.9;
-        if (wpm >= 100) return 99.0;
-        if (wpm >= 90) return 97.0;
-        if (wpm >= 80) return 95.0;
-        if (wpm >= 70) return 90.0;
-        if (wpm >= 60) return 80.0;
-        if (wpm >= 50) return 65.0;
-        if (wpm >= 41) return 50.0;
-        if (wpm >= 35) return 35.0;
-        if (wpm >= 30) return 25.0;
-        if (wpm >= 25) return 15.0;
-        if (wpm >= 20) return 10.0;
-        return 5.0;
+        rootVBox.getChildren().add(resultBox);
     }
 
     private void showDominanceScreen(double wpm, double accuracy, double percentile) {
@@ -409,7 +758,7 @@ public class KeyyController {
         Label percentileValue = new Label(String.format("%.1f%%", percentile));
         percentileValue.setStyle("-fx-font-size: 64px; -fx-font-weight: bold; -fx-text-fill: #4ade80;");
 
-        Label percentileText = new Label("of typists beaten");
+        Label percentileText = new Label("of results beaten");
         percentileText.setStyle("-fx-font-size: 20px; -fx-text-fill: " + (isDarkMode ? DARK_TEXT : LIGHT_TEXT) + ";");
 
         ProgressBar percentileBar = new ProgressBar(percentile / 100.0);
@@ -449,18 +798,104 @@ public class KeyyController {
         backBtn.setStyle("-fx-font-size: 18px; -fx-padding: 12 30; -fx-cursor: hand; -fx-background-color: #646669; -fx-text-fill: white; -fx-background-radius: 8; -fx-font-weight: bold;");
         backBtn.setOnAction(e -> showResultScreen());
 
+        HBox dominanceButtons = new HBox(15);
+        dominanceButtons.setAlignment(javafx.geometry.Pos.CENTER);
+        dominanceButtons.getChildren().add(backBtn);
+
+        if (lastReplay != null) {
+            Button replayBtn = new Button("▶ Replay");
+            replayBtn.setFocusTraversable(false);
+            replayBtn.setStyle("-fx-font-size: 18px; -fx-padding: 12 30; -fx-cursor: hand; -fx-background-color: #3b82f6; -fx-text-fill: white; -fx-background-radius: 8; -fx-font-weight: bold;");
+            replayBtn.setOnAction(e -> showReplayScreen(() -> showDominanceScreen(wpm, accuracy, percentile)));
+            dominanceButtons.getChildren().add(replayBtn);
+        }
+
         dominanceBox.getChildren().addAll(
                 titleLabel,
                 wpmGraphLabel,
                 wpmChart,
                 statsContainer,
                 rankLabel,
-                backBtn
+                dominanceButtons
         );
 
         rootVBox.getChildren().add(dominanceBox);
     }
 
+    // Play the finished test back at a chosen speed
+    private void showReplayScreen(Runnable onBack) {
+        rootVBox.getChildren().clear();
+
+        VBox replayBox = new VBox(30);
+        replayBox.setAlignment(javafx.geometry.Pos.CENTER);
+        replayBox.setStyle("-fx-padding: 40;");
+
+        Label titleLabel = new Label("▶ Replay");
+        titleLabel.setStyle("-fx-font-size: 36px; -fx-font-weight: bold; -fx-text-fill: #e2b714;");
+
+        Label positionLabel = new Label("0.0s");
+        positionLabel.setStyle("-fx-font-size: 32px; -fx-font-weight: bold; -fx-text-fill: #e2b714;");
+
+        TypingSurface replaySurface = new TypingSurface();
+        replaySurface.setPrefWidth(800);
+        replaySurface.setDarkMode(isDarkMode);
+
+        double total = lastReplay.duration() / 1e9;
+        replayPlayer = new ReplayPlayer(lastReplay, replaySurface,
+                nanos -> positionLabel.setText(String.format("%.1fs / %.1fs", nanos / 1e9, total)));
+
+        // Speed buttons, the current one highlighted
+        HBox speedBox = new HBox(10);
+        speedBox.setAlignment(javafx.geometry.Pos.CENTER);
+        String speedStyle = "-fx-font-size: 16px; -fx-padding: 8 18; -fx-cursor: hand; -fx-background-radius: 8; -fx-font-weight: bold; ";
+        int[] speeds = {1, 2, 4, 8, 16};
+        List<Button> speedButtons = new ArrayList<>();
+        for (int speed : speeds) {
+            Button speedBtn = new Button(speed + "x");
+            speedBtn.setFocusTraversable(false);
+            speedBtn.setStyle(speedStyle + (speed == 1
+                    ? "-fx-background-color: #e2b714; -fx-text-fill: " + DARK_BG + ";"
+                    : "-fx-background-color: #646669; -fx-text-fill: white;"));
+            speedBtn.setOnAction(e -> {
+                replayPlayer.setSpeed(speed);
+                for (Button other : speedButtons) {
+                    other.setStyle(speedStyle + (other == speedBtn
+                            ? "-fx-background-color: #e2b714; -fx-text-fill: " + DARK_BG + ";"
+                            : "-fx-background-color: #646669; -fx-text-fill: white;"));
+                }
+            });
+            speedButtons.add(speedBtn);
+        }
+        speedBox.getChildren().addAll(speedButtons);
+
+        Button restartBtn = new Button("↻ Restart");
+        restartBtn.setFocusTraversable(false);
+        restartBtn.setStyle("-fx-font-size: 18px; -fx-padding: 12 30; -fx-cursor: hand; -fx-background-color: #3b82f6; -fx-text-fill: white; -fx-background-radius: 8; -fx-font-weight: bold;");
+        restartBtn.setOnAction(e -> {
+            replayPlayer.stop();
+            replayPlayer.rewind();
+            replayPlayer.start();
+        });
+
+        Button backBtn = new Button("← Back");
+        backBtn.setFocusTraversable(false);
+        backBtn.setStyle("-fx-font-size: 18px; -fx-padding: 12 30; -fx-cursor: hand; -fx-background-color: #646669; -fx-text-fill: white; -fx-background-radius: 8; -fx-font-weight: bold;");
+        backBtn.setOnAction(e -> {
+            replayPlayer.stop();
+            replayPlayer = null;
+            onBack.run();
+        });
+
+        HBox buttonBox = new HBox(15);
+        buttonBox.setAlignment(javafx.geometry.Pos.CENTER);
+        buttonBox.getChildren().addAll(restartBtn, backBtn);
+
+        replayBox.getChildren().addAll(titleLabel, positionLabel, replaySurface, speedBox, buttonBox);
+        rootVBox.getChildren().add(replayBox);
+
+        replayPlayer.start();
+    }
+
     private LineChart<Number, Number> createWPMChart() {
         NumberAxis xAxis = new NumberAxis();
         xAxis.setLabel("Time (seconds)");
@@ -479,8 +914,8 @@ public class KeyyController {
         XYChart.Series<Number, Number> series = new XYChart.Series<>();
         series.setName("WPM");
 
-        for (int i = 0; i < wpmHistory.size(); i++) {
-            series.getData().add(new XYChart.Data<>(timeHistory.get(i), wpmHistory.get(i)));
+        for (int i = 0; i < wpmSeries.size(); i++) {
+            series.getData().add(new XYChart.Data<>(wpmSeries.seconds(i), wpmSeries.wpm(i)));
         }
 
         lineChart.getData().add(series);
@@ -522,7 +957,7 @@ public class KeyyController {
 
         VBox mainBox = new VBox(40);
         mainBox.setAlignment(javafx.geometry.Pos.CENTER);
-        mainBox.getChildren().addAll(topBar, textFlow);
+        mainBox.getChildren().addAll(topBar, typingSurface);
 
         rootVBox.getChildren().addAll(headerBox, mainBox);
 
@@ -538,6 +973,7 @@ public class KeyyController {
     }
 
     private void showLeaderboard() {
+        leaveRace();
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("leaderboard-view.fxml"));
             Scene scene = new Scene(loader.load());
@@ -555,6 +991,7 @@ public class KeyyController {
     }
 
     private void goToDashboard() {
+        leaveRace();
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("dashboard-view.fxml"));
             Scene scene = new Scene(loader.load());
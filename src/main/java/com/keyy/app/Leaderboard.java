@@ -0,0 +1,53 @@
+package com.keyy.app;
+
+import java.util.*;
+
+// Materialized leaderboard: best WPM, attempts and average per user, ranked
+// by best WPM through a RankIndex. Built once from the score files, then
+// updated in place by every saved score so opening the leaderboard never
+// touches the disk, and a rank or a page of ranks costs O(log n).
+public class Leaderboard {
+    // Highest best WPM first, ties broken by name so the order is stable
+    static final Comparator<LeaderboardEntry> RANK_ORDER =
+            Comparator.comparingDouble(LeaderboardEntry::getBestWpm).reversed()
+                    .thenComparing(LeaderboardEntry::getUsername);
+
+    private final Map<String, LeaderboardEntry> entries = new HashMap<>();
+    private final RankIndex ranks = new RankIndex();
+
+    // Register a user with no scores yet
+    public synchronized void addUser(String username) {
+        if (entries.containsKey(username)) return;
+
+        entries.put(username, new LeaderboardEntry(username));
+        ranks.addUser(username);
+    }
+
+    // Update a user's totals after a new result
+    public synchronized void recordScore(String username, double wpm) {
+        LeaderboardEntry entry = entries.computeIfAbsent(username, LeaderboardEntry::new);
+        entry.addScore(wpm);
+        ranks.updateBest(username, entry.getBestWpm());
+    }
+
+    // Up to count entries starting at a 0-based rank
+    public synchronized List<LeaderboardEntry> range(int from, int count) {
+        List<LeaderboardEntry> result = new ArrayList<>();
+        for (String username : ranks.range(from, count)) {
+            // Copies, so later scores do not change what the caller holds
+            LeaderboardEntry copy = new LeaderboardEntry(username);
+            copy.merge(entries.get(username));
+            result.add(copy);
+        }
+        return result;
+    }
+
+    // 1-based rank of a user, or 0 if they are not on the board
+    public synchronized int rankOf(String username) {
+        return ranks.rankOf(username);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
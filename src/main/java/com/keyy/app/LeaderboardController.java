@@ -5,21 +5,30 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
 
 public class LeaderboardController {
 
+    // Every row has the same height, so the list can place rows without measuring them
+    private static final double ROW_HEIGHT = 70;
+
     @FXML
     private VBox rootVBox;
 
     @FXML
-    private VBox leaderboardContainer;
+    private ListView<LeaderboardEntry> leaderboardList;
+
+    @FXML
+    private Button myRankBtn;
+
+    @FXML
+    private Label myRankLabel;
 
     @FXML
     private Button backBtn;
@@ -30,14 +39,48 @@ public class LeaderboardController {
     @FXML
     private Label userStatsLabel;
 
+    @FXML
+    private HBox windowBox;
+
     private boolean isDarkMode = false;
     private String currentUsername;
+    private LeaderboardWindow window = LeaderboardWindow.ALL_TIME;
 
     @FXML
     public void initialize() {
         darkModeBtn.setText("🌙");
         darkModeBtn.setOnAction(e -> toggleDarkMode());
         backBtn.setOnAction(e -> goBackToTyping());
+        myRankBtn.setOnAction(e -> jumpToMyRank());
+
+        // Only the rows on screen get cells, and only their pages are fetched
+        leaderboardList.setFixedCellSize(ROW_HEIGHT);
+        leaderboardList.setCellFactory(list -> new LeaderboardCell());
+
+        // One button per window; the board for each is kept up to date, so switching is instant
+        for (LeaderboardWindow option : LeaderboardWindow.values()) {
+            Button button = new Button(option.getLabel());
+            button.setFocusTraversable(false);
+            button.setUserData(option);
+            button.setOnAction(e -> {
+                window = option;
+                styleWindowButtons();
+                loadLeaderboard();
+            });
+            windowBox.getChildren().add(button);
+        }
+        styleWindowButtons();
+    }
+
+    private void styleWindowButtons() {
+        String idleColor = isDarkMode ? "#2d2d2d" : "white";
+        String idleText = isDarkMode ? "#d1d0c5" : "#323437";
+        for (javafx.scene.Node node : windowBox.getChildren()) {
+            boolean selected = node.getUserData() == window;
+            node.setStyle("-fx-font-size: 15px; -fx-padding: 8 18; -fx-background-radius: 8; -fx-cursor: hand; -fx-font-weight: bold;"
+                    + " -fx-background-color: " + (selected ? "#e2b714" : idleColor) + ";"
+                    + " -fx-text-fill: " + (selected ? "#323437" : idleText) + ";");
+        }
     }
 
     public void setCurrentUser(String username) {
@@ -57,67 +100,119 @@ public class LeaderboardController {
             rootVBox.setStyle("-fx-background-color: #f5f7fa; -fx-padding: 40;");
         }
 
-        loadLeaderboard(); // Reload with new colors
+        styleWindowButtons();
+        styleList();
+        leaderboardList.refresh(); // Redraw the rows with new colors
     }
 
+    private void styleList() {
+        leaderboardList.setStyle("-fx-background-color: transparent; -fx-control-inner-background: "
+                + (isDarkMode ? "#323437" : "#f5f7fa") + "; -fx-padding: 10;");
+    }
+
+    // Only the size is read here; rows are fetched a page at a time as they scroll into view
     private void loadLeaderboard() {
-        leaderboardContainer.getChildren().clear();
+        Label loadingLabel = new Label("Loading leaderboard...");
+        loadingLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #646669;");
+        leaderboardList.setPlaceholder(loadingLabel);
+        leaderboardList.setItems(null);
+        myRankLabel.setText("");
+
+        LeaderboardWindow requested = window;
+        AsyncUserManager.onFxThread(AsyncUserManager.getLeaderboardSize(requested), size -> {
+            // Skip answers for a window the user already switched away from
+            if (requested != window) return;
+
+            Label emptyLabel = new Label(window == LeaderboardWindow.ALL_TIME
+                    ? "No players yet. Be the first!"
+                    : "No tests in this period yet. Be the first!");
+            emptyLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #646669;");
+            leaderboardList.setPlaceholder(emptyLabel);
+            leaderboardList.setItems(new PagedLeaderboard(requested, size));
+            showMyRank(false);
+        });
+    }
 
-        List<Map.Entry<String, Double>> leaderboard = UserManager.getLeaderboard();
+    private void jumpToMyRank() {
+        showMyRank(true);
+    }
 
-        int rank = 1;
-        for (Map.Entry<String, Double> entry : leaderboard) {
-            String username = entry.getKey();
-            double wpm = entry.getValue();
+    // Look up the user's rank in the current window, optionally scrolling to it
+    private void showMyRank(boolean scroll) {
+        if (currentUsername == null) return;
 
-            HBox row = createLeaderboardRow(rank, username, wpm);
-            leaderboardContainer.getChildren().add(row);
-            rank++;
-        }
+        LeaderboardWindow requested = window;
+        AsyncUserManager.onFxThread(AsyncUserManager.getRank(requested, currentUsername), rank -> {
+            if (requested != window || leaderboardList.getItems() == null) return;
+
+            if (rank == 0) {
+                myRankLabel.setText(window == LeaderboardWindow.ALL_TIME
+                        ? "You are not ranked yet"
+                        : "You are not in this period's top " + leaderboardList.getItems().size());
+                return;
+            }
+            myRankLabel.setText(String.format("Your rank: #%,d of %,d", rank, leaderboardList.getItems().size()));
+            // The user's own row is highlighted, so a couple of rows above it is enough context
+            if (scroll) {
+                leaderboardList.scrollTo(Math.max(0, rank - 3));
+            }
+        });
+    }
 
-        if (leaderboard.isEmpty()) {
-            Label emptyLabel = new Label("No players yet. Be the first!");
-            emptyLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #646669;");
-            leaderboardContainer.getChildren().add(emptyLabel);
+    // One reusable row: the labels are built once and refilled as the cell
+    // moves to another rank
+    private class LeaderboardCell extends ListCell<LeaderboardEntry> {
+        private final HBox row = new HBox(30);
+        private final Label rankLabel = new Label();
+        private final Label usernameLabel = new Label();
+        private final Label wpmLabel = new Label();
+        private final Label attemptsLabel = new Label();
+
+        LeaderboardCell() {
+            row.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+            row.setPrefWidth(600);
+            row.getChildren().addAll(rankLabel, usernameLabel, wpmLabel, attemptsLabel);
+            setStyle("-fx-background-color: transparent; -fx-padding: 5 0;");
         }
-    }
 
-    private HBox createLeaderboardRow(int rank, String username, double wpm) {
-        HBox row = new HBox(30);
-        row.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
-        row.setPrefWidth(600);
+        @Override
+        protected void updateItem(LeaderboardEntry entry, boolean empty) {
+            super.updateItem(entry, empty);
+            setText(null);
+            if (empty) {
+                setGraphic(null);
+                return;
+            }
 
-        String bgColor = isDarkMode ? "#2d2d2d" : "white";
-        String textColor = isDarkMode ? "#d1d0c5" : "#323437";
-        String rankColor = getRankColor(rank);
+            int rank = getIndex() + 1;
+            String username = entry != null ? entry.getUsername() : "…";
+            boolean isCurrentUser = username.equals(currentUsername);
 
-        // Highlight current user
-        if (username.equals(currentUsername)) {
-            bgColor = isDarkMode ? "#3d3d3d" : "#fff9e6";
-        }
+            String bgColor = isDarkMode ? "#2d2d2d" : "white";
+            String textColor = isDarkMode ? "#d1d0c5" : "#323437";
 
-        row.setStyle("-fx-background-color: " + bgColor + "; -fx-padding: 15; -fx-background-radius: 10; -fx-border-radius: 10;");
+            // Highlight current user
+            if (isCurrentUser) {
+                bgColor = isDarkMode ? "#3d3d3d" : "#fff9e6";
+            }
 
-        // Rank
-        Label rankLabel = new Label(getRankIcon(rank) + " #" + rank);
-        rankLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: " + rankColor + "; -fx-min-width: 80;");
+            row.setStyle("-fx-background-color: " + bgColor + "; -fx-padding: 15; -fx-background-radius: 10; -fx-border-radius: 10;");
 
-        // Username
-        Label usernameLabel = new Label(username + (username.equals(currentUsername) ? " (You)" : ""));
-        usernameLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: " + textColor + "; -fx-font-weight: bold; -fx-min-width: 200;");
+            rankLabel.setText(getRankIcon(rank) + " #" + rank);
+            rankLabel.setStyle("-fx-font-size: 20px; -fx-font-weight: bold; -fx-text-fill: " + getRankColor(rank) + "; -fx-min-width: 80;");
 
-        // WPM
-        Label wpmLabel = new Label(String.format("%.1f WPM", wpm));
-        wpmLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #e2b714; -fx-font-weight: bold;");
+            usernameLabel.setText(username + (isCurrentUser ? " (You)" : ""));
+            usernameLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: " + textColor + "; -fx-font-weight: bold; -fx-min-width: 200;");
 
-        // Attempts
-        int attempts = UserManager.getTotalAttempts(username);
-        Label attemptsLabel = new Label(attempts + " attempts");
-        attemptsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #646669;");
+            // Rows whose page is still loading show only their rank
+            wpmLabel.setText(entry != null ? String.format("%.1f WPM", entry.getBestWpm()) : "");
+            wpmLabel.setStyle("-fx-font-size: 18px; -fx-text-fill: #e2b714; -fx-font-weight: bold;");
 
-        row.getChildren().addAll(rankLabel, usernameLabel, wpmLabel, attemptsLabel);
+            attemptsLabel.setText(entry != null ? entry.getAttempts() + " attempts" : "");
+            attemptsLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #646669;");
 
-        return row;
+            setGraphic(row);
+        }
     }
 
     private String getRankIcon(int rank) {
@@ -141,19 +236,18 @@ public class LeaderboardController {
     private void loadUserStats() {
         if (currentUsername == null) return;
 
-        double bestWPM = UserManager.getBestWPM(currentUsername);
-        double avgWPM = UserManager.getAverageWPM(currentUsername);
-        int attempts = UserManager.getTotalAttempts(currentUsername);
-
         String textColor = isDarkMode ? "#d1d0c5" : "#323437";
+        userStatsLabel.setText("Your Stats: loading...");
+        userStatsLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: " + textColor + "; -fx-font-weight: bold;");
 
-        String stats = String.format(
-                "Your Stats: Best WPM: %.1f | Average WPM: %.1f | Total Attempts: %d",
-                bestWPM, avgWPM, attempts
-        );
+        AsyncUserManager.onFxThread(AsyncUserManager.getUserStats(currentUsername), userStats -> {
+            String stats = String.format(
+                    "Your Stats: Best WPM: %.1f | Average WPM: %.1f | Total Attempts: %d",
+                    userStats.getBestWpm(), userStats.getAverageWpm(), userStats.getCount()
+            );
 
-        userStatsLabel.setText(stats);
-        userStatsLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: " + textColor + "; -fx-font-weight: bold;");
+            userStatsLabel.setText(stats);
+        });
     }
 
     private void goBackToTyping() {
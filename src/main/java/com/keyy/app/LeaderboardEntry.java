@@ -0,0 +1,47 @@
+package com.keyy.app;
+
+public class LeaderboardEntry {
+    private final String username;
+    private double bestWpm;
+    private int attempts;
+    private double wpmSum;
+
+    public LeaderboardEntry(String username) {
+        this.username = username;
+    }
+
+    // Fold one more result into the running totals
+    void addScore(double wpm) {
+        if (attempts == 0 || wpm > bestWpm) {
+            bestWpm = wpm;
+        }
+        attempts++;
+        wpmSum += wpm;
+    }
+
+    // Fold in another set of totals for the same user
+    void merge(LeaderboardEntry other) {
+        if (other.attempts == 0) return;
+        if (attempts == 0 || other.bestWpm > bestWpm) {
+            bestWpm = other.bestWpm;
+        }
+        attempts += other.attempts;
+        wpmSum += other.wpmSum;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public double getBestWpm() {
+        return bestWpm;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public double getAverageWpm() {
+        return attempts > 0 ? wpmSum / attempts : 0.0;
+    }
+}
@@ -0,0 +1,31 @@
+package com.keyy.app;
+
+// Time spans the leaderboard can be shown for. The rolling windows count
+// whole days back from today; ALL_TIME has no day limit.
+public enum LeaderboardWindow {
+    TODAY("Today", 1),
+    WEEK("7 Days", 7),
+    MONTH("30 Days", 30),
+    ALL_TIME("All Time", 0);
+
+    private final String label;
+    private final int days;
+
+    LeaderboardWindow(String label, int days) {
+        this.label = label;
+        this.days = days;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    // True if a score from the given day falls in this window as of today
+    public boolean contains(int epochDay, int today) {
+        return days == 0 || (epochDay <= today && epochDay > today - days);
+    }
+}
@@ -24,7 +24,7 @@ public class LoginController {
 
     @FXML
     public void initialize() {
-        UserManager.initialize();
+        AsyncUserManager.initialize();
 
         darkModeBtn.setText("🌙");
         darkModeBtn.setOnAction(e -> toggleDarkMode());
@@ -55,20 +55,26 @@ public class LoginController {
             return;
         }
 
-        if (UserManager.loginUser(username, password)) {
-            currentUsername = username;
-            showMessage("Login successful! Loading...", "#4ade80");
-            new Thread(() -> {
-                try {
-                    Thread.sleep(500);
-                    javafx.application.Platform.runLater(this::loadTypingScreen);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }).start();
-        } else {
-            showMessage("Invalid username or password!", "#f87171");
-        }
+        setBusy(true);
+        showMessage("Checking credentials...", "#646669");
+
+        AsyncUserManager.onFxThread(AsyncUserManager.loginUser(username, password), success -> {
+            if (success) {
+                currentUsername = username;
+                showMessage("Login successful! Loading...", "#4ade80");
+                new Thread(() -> {
+                    try {
+                        Thread.sleep(500);
+                        javafx.application.Platform.runLater(this::loadTypingScreen);
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    }
+                }).start();
+            } else {
+                setBusy(false);
+                showMessage("Invalid username or password!", "#f87171");
+            }
+        });
     }
 
     private void handleRegister() {
@@ -90,12 +96,24 @@ public class LoginController {
             return;
         }
 
-        if (UserManager.registerUser(username, password)) {
-            showMessage("Registration successful! Please login.", "#4ade80");
-            passwordField.clear();
-        } else {
-            showMessage("Username already exists!", "#f87171");
-        }
+        setBusy(true);
+        showMessage("Creating account...", "#646669");
+
+        AsyncUserManager.onFxThread(AsyncUserManager.registerUser(username, password), success -> {
+            setBusy(false);
+            if (success) {
+                showMessage("Registration successful! Please login.", "#4ade80");
+                passwordField.clear();
+            } else {
+                showMessage("Username already exists!", "#f87171");
+            }
+        });
+    }
+
+    // Block double submits while a request is in flight
+    private void setBusy(boolean busy) {
+        loginBtn.setDisable(busy);
+        registerBtn.setDisable(busy);
     }
 
     private void showMessage(String message, String color) {
@@ -0,0 +1,77 @@
+package com.keyy.app;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.*;
+
+// Leaderboard rows for a ListView, fetched a page at a time.
+// The list reports every ranked user but only holds the few pages read most
+// recently, so memory stays the same however many users there are. A row
+// whose page is not loaded reads as null, which the cell draws as a
+// placeholder, and its page is requested from the I/O thread; when the page
+// arrives its rows are replaced so the visible cells redraw.
+// Used only from the FX thread.
+public class PagedLeaderboard extends ObservableListBase<LeaderboardEntry> {
+    private static final int PAGE_SIZE = 50;
+    private static final int MAX_PAGES = 8;
+
+    private final LeaderboardWindow window;
+    private final int size;
+
+    // Page number -> rows, least recently read first
+    private final Map<Integer, List<LeaderboardEntry>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<LeaderboardEntry>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+
+    public PagedLeaderboard(LeaderboardWindow window, int size) {
+        this.window = window;
+        this.size = size;
+    }
+
+    public LeaderboardWindow getWindow() {
+        return window;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public LeaderboardEntry get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        int page = index / PAGE_SIZE;
+        List<LeaderboardEntry> rows = pages.get(page);
+        if (rows == null) {
+            load(page);
+            return null;
+        }
+        int offset = index % PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    private void load(int page) {
+        if (!loading.add(page)) return;
+
+        int from = page * PAGE_SIZE;
+        AsyncUserManager.onFxThread(AsyncUserManager.getLeaderboardRange(window, from, PAGE_SIZE), rows -> {
+            loading.remove(page);
+            pages.put(page, rows);
+
+            // The ranking may have shrunk since the size was read
+            int to = Math.min(size, from + rows.size());
+            if (from < to) {
+                beginChange();
+                nextReplace(from, to, Collections.nCopies(to - from, null));
+                endChange();
+            }
+        });
+    }
+}
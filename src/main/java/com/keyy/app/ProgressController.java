@@ -13,9 +13,7 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 public class ProgressController {
 
@@ -28,6 +26,9 @@ public class ProgressController {
     @FXML
     private Button darkModeBtn;
 
+    @FXML
+    private Button heatmapBtn;
+
     @FXML
     private LineChart<String, Number> wpmChart;
 
@@ -57,6 +58,7 @@ public class ProgressController {
         darkModeBtn.setText("🌙");
         darkModeBtn.setOnAction(e -> toggleDarkMode());
         backBtn.setOnAction(e -> goBackToDashboard());
+        heatmapBtn.setOnAction(e -> showKeyHeatmap());
     }
 
     public void setCurrentUser(String username) {
@@ -65,146 +67,92 @@ public class ProgressController {
     }
 
     private void loadProgress() {
-        List<ScoreRecord> scores = UserManager.getUserScores(currentUsername);
-
-        if (scores.isEmpty()) {
-            showEmptyState();
-            return;
-        }
-
-        // Load WPM chart
-        loadWPMChart(scores);
-
-        // Load Accuracy chart
-        loadAccuracyChart(scores);
-
-        // Load statistics
-        loadStatistics(scores);
+        totalTestsLabel.setText("…");
+        bestWpmLabel.setText("Loading...");
+        avgWpmLabel.setText("Loading...");
+        improvementLabel.setText("…");
+        consistencyLabel.setText("…");
+
+        String username = currentUsername;
+        AsyncUserManager.onFxThread(AsyncUserManager.supply(() -> {
+            UserStats stats = UserManager.getUserStats(username);
+            if (stats.getCount() == 0) return null;
+
+            // One pass over the score file for charts, improvement and consistency
+            ProgressSummary summary = new ProgressSummary(stats.getCount(), stats.getAverageWpm());
+            UserManager.forEachScore(username, summary);
+            return Map.entry(stats, summary);
+        }), loaded -> {
+            if (loaded == null) {
+                showEmptyState();
+                return;
+            }
+
+            // Load WPM chart
+            loadWPMChart(loaded.getValue());
+
+            // Load Accuracy chart
+            loadAccuracyChart(loaded.getValue());
+
+            // Load statistics
+            loadStatistics(loaded.getKey(), loaded.getValue());
+        });
     }
 
-    private void loadWPMChart(List<ScoreRecord> scores) {
+    private void loadWPMChart(ProgressSummary summary) {
         wpmChart.getData().clear();
 
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("WPM Progress");
 
-        // Group by date and get average WPM per day
-        Map<LocalDate, Double> dailyAvg = scores.stream()
-                .collect(Collectors.groupingBy(
-                        ScoreRecord::getDate,
-                        Collectors.averagingDouble(ScoreRecord::getWpm)
-                ));
+        // Average WPM per day, in date order
+        Map<LocalDate, Double> dailyAvg = summary.getDailyAverageWpm();
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd");
 
-        dailyAvg.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> {
-                    String date = entry.getKey().format(formatter);
-                    series.getData().add(new XYChart.Data<>(date, entry.getValue()));
-                });
+        dailyAvg.forEach((day, wpm) -> series.getData().add(new XYChart.Data<>(day.format(formatter), wpm)));
 
         wpmChart.getData().add(series);
     }
 
-    private void loadAccuracyChart(List<ScoreRecord> scores) {
+    private void loadAccuracyChart(ProgressSummary summary) {
         accuracyChart.getData().clear();
 
         XYChart.Series<String, Number> series = new XYChart.Series<>();
         series.setName("Accuracy Progress");
 
-        // Group by date and get average accuracy per day
-        Map<LocalDate, Double> dailyAvg = scores.stream()
-                .collect(Collectors.groupingBy(
-                        ScoreRecord::getDate,
-                        Collectors.averagingDouble(ScoreRecord::getAccuracy)
-                ));
+        // Average accuracy per day, in date order
+        Map<LocalDate, Double> dailyAvg = summary.getDailyAverageAccuracy();
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd");
 
-        dailyAvg.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .forEach(entry -> {
-                    String date = entry.getKey().format(formatter);
-                    series.getData().add(new XYChart.Data<>(date, entry.getValue()));
-                });
+        dailyAvg.forEach((day, accuracy) -> series.getData().add(new XYChart.Data<>(day.format(formatter), accuracy)));
 
         accuracyChart.getData().add(series);
     }
 
-    private void loadStatistics(List<ScoreRecord> scores) {
+    private void loadStatistics(UserStats stats, ProgressSummary summary) {
         // Total tests
-        totalTestsLabel.setText(String.valueOf(scores.size()));
+        totalTestsLabel.setText(String.valueOf(stats.getCount()));
 
         // Best WPM
-        double bestWPM = scores.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .max()
-                .orElse(0.0);
-        bestWpmLabel.setText(String.format("%.1f WPM", bestWPM));
+        bestWpmLabel.setText(String.format("%.1f WPM", stats.getBestWpm()));
 
         // Average WPM
-        double avgWPM = scores.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .average()
-                .orElse(0.0);
-        avgWpmLabel.setText(String.format("%.1f WPM", avgWPM));
+        avgWpmLabel.setText(String.format("%.1f WPM", stats.getAverageWpm()));
 
         // Improvement rate
-        double improvement = calculateImprovement(scores);
+        double improvement = summary.getImprovement();
         improvementLabel.setText(String.format("%+.1f%% improvement", improvement));
         improvementLabel.setStyle(improvement >= 0
                 ? "-fx-font-size: 18px; -fx-text-fill: #4ade80; -fx-font-weight: bold;"
                 : "-fx-font-size: 18px; -fx-text-fill: #f87171; -fx-font-weight: bold;");
 
         // Consistency score
-        double consistency = calculateConsistency(scores);
+        double consistency = summary.getConsistency();
         consistencyLabel.setText(String.format("%.0f%% consistent", consistency));
     }
 
-    private double calculateImprovement(List<ScoreRecord> scores) {
-        if (scores.size() < 2) return 0.0;
-
-        // Compare first 5 tests vs last 5 tests
-        int compareSize = Math.min(5, scores.size() / 2);
-
-        List<ScoreRecord> firstTests = scores.subList(0, Math.min(compareSize, scores.size()));
-        List<ScoreRecord> lastTests = scores.subList(
-                Math.max(0, scores.size() - compareSize),
-                scores.size()
-        );
-
-        double firstAvg = firstTests.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .average()
-                .orElse(0.0);
-
-        double lastAvg = lastTests.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .average()
-                .orElse(0.0);
-
-        if (firstAvg == 0) return 0.0;
-
-        return ((lastAvg - firstAvg) / firstAvg) * 100;
-    }
-
-    private double calculateConsistency(List<ScoreRecord> scores) {
-        if (scores.isEmpty()) return 0.0;
-
-        double avgWPM = scores.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .average()
-                .orElse(0.0);
-
-        // Count tests within 10% of average
-        long consistentTests = scores.stream()
-                .filter(s -> Math.abs(s.getWpm() - avgWPM) <= avgWPM * 0.1)
-                .count();
-
-        return (consistentTests * 100.0) / scores.size();
-    }
-
     private void showEmptyState() {
         totalTestsLabel.setText("0");
         bestWpmLabel.setText("No data yet");
@@ -225,6 +173,23 @@ public class ProgressController {
         }
     }
 
+    private void showKeyHeatmap() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("key-heatmap-view.fxml"));
+            Scene scene = new Scene(loader.load());
+
+            KeyHeatmapController controller = loader.getController();
+            controller.setCurrentUser(currentUsername);
+
+            Stage stage = (Stage) rootVBox.getScene().getWindow();
+            stage.setScene(scene);
+            stage.setMaximized(true);
+            stage.setTitle("Keyy - Key Heatmap");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void goBackToDashboard() {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("dashboard-view.fxml"));
@@ -0,0 +1,94 @@
+package com.keyy.app;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Everything the progress screen needs, folded from the score history in a
+// single pass. Memory grows with the number of active days, not with the
+// number of tests.
+public class ProgressSummary implements ScoreVisitor {
+    // Tests compared at each end for the improvement figure
+    private static final int COMPARE_SIZE = 5;
+
+    private final int totalTests;
+    private final double averageWpm;
+    private final int compareSize;
+
+    // epoch day -> {wpm sum, accuracy sum, count}
+    private final TreeMap<Integer, double[]> days = new TreeMap<>();
+
+    private int seen;
+    private double firstSum;
+    private double lastSum;
+    private final float[] recent;
+    private int consistentTests;
+
+    // The count and mean come from the cached UserStats
+    public ProgressSummary(int totalTests, double averageWpm) {
+        this.totalTests = totalTests;
+        this.averageWpm = averageWpm;
+        this.compareSize = Math.min(COMPARE_SIZE, totalTests / 2);
+        this.recent = new float[Math.max(1, compareSize)];
+    }
+
+    @Override
+    public void visit(float wpm, float accuracy, int seconds, int epochDay) {
+        double[] day = days.computeIfAbsent(epochDay, d -> new double[3]);
+        day[0] += wpm;
+        day[1] += accuracy;
+        day[2]++;
+
+        if (seen < compareSize) {
+            firstSum += wpm;
+        }
+        if (compareSize > 0) {
+            // Keep a sliding sum over the last compareSize tests
+            int slot = seen % compareSize;
+            if (seen >= compareSize) {
+                lastSum -= recent[slot];
+            }
+            recent[slot] = wpm;
+            lastSum += wpm;
+        }
+
+        if (Math.abs(wpm - averageWpm) <= averageWpm * 0.1) {
+            consistentTests++;
+        }
+        seen++;
+    }
+
+    public Map<LocalDate, Double> getDailyAverageWpm() {
+        return dailyAverage(0);
+    }
+
+    public Map<LocalDate, Double> getDailyAverageAccuracy() {
+        return dailyAverage(1);
+    }
+
+    private Map<LocalDate, Double> dailyAverage(int column) {
+        Map<LocalDate, Double> result = new TreeMap<>();
+        for (Map.Entry<Integer, double[]> entry : days.entrySet()) {
+            double[] day = entry.getValue();
+            result.put(LocalDate.ofEpochDay(entry.getKey()), day[column] / day[2]);
+        }
+        return result;
+    }
+
+    // Percentage change between the average of the first and last few tests
+    public double getImprovement() {
+        if (totalTests < 2 || compareSize == 0) return 0.0;
+
+        double firstAvg = firstSum / compareSize;
+        double lastAvg = lastSum / compareSize;
+        if (firstAvg == 0) return 0.0;
+
+        return ((lastAvg - firstAvg) / firstAvg) * 100;
+    }
+
+    // Percentage of tests within 10% of the average WPM
+    public double getConsistency() {
+        if (seen == 0) return 0.0;
+        return (consistentTests * 100.0) / seen;
+    }
+}
@@ -0,0 +1,204 @@
+package com.keyy.app;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// One racer's connection to a RaceServer.
+// A reader thread decodes frames and hands them to the listener on the given
+// executor (the FX thread in the app). Progress is sent at most 30 times a
+// second, only when it changed, except that reaching the end of the passage
+// is sent straight away so the finishing time is exact.
+public final class RaceClient implements Closeable {
+    private static final long SEND_INTERVAL_MILLIS = 33;
+
+    public interface Listener {
+        void welcome(int id, String passage, long millisUntilStart);
+
+        void racerJoined(int id, String name);
+
+        void racerLeft(int id);
+
+        void started();
+
+        // Pairs of racer id and position, for the racers that moved
+        void positions(int[] idsAndPositions);
+
+        void finished(int id, int place, double wpm);
+
+        // The race ended or the connection was lost; error is null after a normal END
+        void ended(IOException error);
+    }
+
+    private final SocketChannel channel;
+    private final Listener listener;
+    private final Executor callbacks;
+    private final ScheduledExecutorService sender;
+
+    private final ByteBuffer out = ByteBuffer.allocate(16);
+    private volatile int position;
+    private int sentPosition;
+    private volatile int passageLength = -1;
+    private volatile boolean closed;
+
+    public RaceClient(String host, int port, String name, Listener listener, Executor callbacks) throws IOException {
+        this.listener = listener;
+        this.callbacks = callbacks;
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+
+        ByteBuffer hello = ByteBuffer.allocate(RaceProtocol.HEADER_SIZE + 1 + 2 + RaceProtocol.MAX_NAME_BYTES * 3);
+        int frame = RaceProtocol.beginFrame(hello, RaceProtocol.HELLO);
+        RaceProtocol.putString(hello, RaceProtocol.trimName(name));
+        RaceProtocol.endFrame(hello, frame);
+        hello.flip();
+        write(hello);
+
+        sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "keyy-race-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sender.scheduleAtFixedRate(this::sendProgress, SEND_INTERVAL_MILLIS, SEND_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        Thread reader = new Thread(this::readLoop, "keyy-race-read");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public boolean isListener(Listener candidate) {
+        return listener == candidate;
+    }
+
+    // Characters typed so far, called on every keystroke
+    public void progress(int position) {
+        this.position = position;
+        if (position == passageLength && !closed) {
+            try {
+                sender.execute(this::sendProgress);
+            } catch (RejectedExecutionException e) {
+                // Closed meanwhile
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        sender.shutdownNow();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sendProgress() {
+        int current = position;
+        if (current == sentPosition || closed) return;
+
+        out.clear();
+        int frame = RaceProtocol.beginFrame(out, RaceProtocol.PROGRESS);
+        out.putShort((short) current);
+        RaceProtocol.endFrame(out, frame);
+        out.flip();
+        try {
+            write(out);
+            sentPosition = current;
+        } catch (IOException e) {
+            // The reader sees the broken connection and reports it
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocate(RaceProtocol.HEADER_SIZE + RaceProtocol.MAX_FRAME);
+        IOException error = null;
+        try {
+            boolean over = false;
+            while (!over) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Race server closed the connection");
+                }
+                in.flip();
+                int length;
+                while (!over && (length = RaceProtocol.frameLength(in)) >= 0) {
+                    int start = in.position();
+                    if (length > RaceProtocol.HEADER_SIZE) {
+                        ByteBuffer body = in.slice(start + RaceProtocol.HEADER_SIZE + 1, length - RaceProtocol.HEADER_SIZE - 1);
+                        over = !dispatch(in.get(start + RaceProtocol.HEADER_SIZE), body);
+                    }
+                    in.position(start + length);
+                }
+                in.compact();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!closed) error = e instanceof IOException ? (IOException) e : new IOException(e);
+        } finally {
+            close();
+        }
+        IOException reported = error;
+        callbacks.execute(() -> listener.ended(reported));
+    }
+
+    // Decode one frame and pass it on; false once the race is over
+    private boolean dispatch(byte type, ByteBuffer body) throws IOException {
+        switch (type) {
+            case RaceProtocol.WELCOME: {
+                int id = RaceProtocol.getUnsignedShort(body);
+                String passage = RaceProtocol.getString(body);
+                long millis = RaceProtocol.getUnsignedShort(body);
+                passageLength = passage.length();
+                callbacks.execute(() -> listener.welcome(id, passage, millis));
+                return true;
+            }
+            case RaceProtocol.RACER: {
+                int id = RaceProtocol.getUnsignedShort(body);
+                String name = RaceProtocol.getString(body);
+                callbacks.execute(() -> listener.racerJoined(id, name));
+                return true;
+            }
+            case RaceProtocol.LEFT: {
+                int id = RaceProtocol.getUnsignedShort(body);
+                callbacks.execute(() -> listener.racerLeft(id));
+                return true;
+            }
+            case RaceProtocol.START:
+                callbacks.execute(listener::started);
+                return true;
+            case RaceProtocol.POSITIONS: {
+                int[] idsAndPositions = new int[RaceProtocol.getUnsignedShort(body) * 2];
+                for (int i = 0; i < idsAndPositions.length; i++) {
+                    idsAndPositions[i] = RaceProtocol.getUnsignedShort(body);
+                }
+                callbacks.execute(() -> listener.positions(idsAndPositions));
+                return true;
+            }
+            case RaceProtocol.FINISHED: {
+                int id = RaceProtocol.getUnsignedShort(body);
+                int place = RaceProtocol.getUnsignedShort(body);
+                double wpm = RaceProtocol.getUnsignedShort(body) / 10.0;
+                callbacks.execute(() -> listener.finished(id, place, wpm));
+                return true;
+            }
+            case RaceProtocol.END:
+                closed = true;
+                return false;
+            default:
+                throw new IOException("Unknown race frame " + type);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.keyy.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Wire format shared by RaceServer and RaceClient.
+// Every frame is an unsigned short body length followed by the body, whose
+// first byte is the frame type. Numbers are big-endian unsigned shorts and
+// strings are an unsigned short byte count followed by UTF-8.
+//
+// Client to server:
+//   HELLO     name
+//   PROGRESS  position                 (characters typed so far)
+// Server to client:
+//   WELCOME   your id | passage | millis until the start
+//   RACER     id | name                (someone in the race, including you)
+//   LEFT      id
+//   START
+//   POSITIONS count | count x (id | position)
+//   FINISHED  id | place | wpm x 10
+//   END                                (the race is over, the server hangs up)
+//
+// POSITIONS only lists racers who moved since the previous one, except for a
+// client that fell behind, which gets every racer once it has caught up.
+public class RaceProtocol {
+    public static final int DEFAULT_PORT = 47321;
+
+    public static final byte HELLO = 1;
+    public static final byte PROGRESS = 2;
+
+    public static final byte WELCOME = 10;
+    public static final byte RACER = 11;
+    public static final byte LEFT = 12;
+    public static final byte START = 13;
+    public static final byte POSITIONS = 14;
+    public static final byte FINISHED = 15;
+    public static final byte END = 16;
+
+    public static final int HEADER_SIZE = 2;
+    public static final int MAX_FRAME = 0xFFFF;
+    public static final int MAX_NAME_BYTES = 64;
+
+    // Bytes one racer takes in a POSITIONS frame
+    public static final int POSITION_SIZE = 4;
+
+    private RaceProtocol() {
+    }
+
+    // Start a frame; finish it with endFrame once the body is written
+    public static int beginFrame(ByteBuffer out, byte type) {
+        int start = out.position();
+        out.putShort((short) 0);
+        out.put(type);
+        return start;
+    }
+
+    public static void endFrame(ByteBuffer out, int start) {
+        out.putShort(start, (short) (out.position() - start - HEADER_SIZE));
+    }
+
+    public static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    public static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[getUnsignedShort(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static int getUnsignedShort(ByteBuffer in) {
+        return in.getShort() & 0xFFFF;
+    }
+
+    // Length of the complete frame at the buffer's position, or -1 if only
+    // part of it has arrived
+    public static int frameLength(ByteBuffer in) {
+        if (in.remaining() < HEADER_SIZE) return -1;
+        int length = HEADER_SIZE + (in.getShort(in.position()) & 0xFFFF);
+        return in.remaining() >= length ? length : -1;
+    }
+
+    // Names are cut to a length that always fits a RACER frame
+    public static String trimName(String name) {
+        String trimmed = name == null || name.isBlank() ? "guest" : name.trim();
+        while (trimmed.getBytes(StandardCharsets.UTF_8).length > MAX_NAME_BYTES) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+}
@@ -0,0 +1,470 @@
+package com.keyy.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+// Hosts typing races for clients on the same machine.
+// Everything runs on one thread around a Selector: the first racer to join
+// opens a race with a fresh passage, anyone joining during the countdown
+// takes part, and progress is broadcast 20 times a second. Each broadcast is
+// encoded once into a shared buffer and copied into every racer's outgoing
+// buffer, so a tick costs one encode plus one copy and one write per racer.
+// A racer whose socket cannot keep up misses position updates, which are
+// superseded by the next ones anyway, and gets a full snapshot once its
+// buffer has drained.
+public class RaceServer implements Runnable, Closeable {
+    private static final long TICK_NANOS = 50_000_000;
+    private static final int MAX_RACERS = 1000;
+    private static final int IN_CAPACITY = 512;
+    private static final int OUT_CAPACITY = 32 * 1024;
+
+    private static RaceServer local;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final long countdownNanos;
+    private final long timeLimitNanos;
+    private final int passageWords;
+    private final Random random = new Random();
+
+    private final List<Racer> racers = new ArrayList<>();
+    private final List<Racer> moved = new ArrayList<>();
+    private final ByteBuffer delta = ByteBuffer.allocate(RaceProtocol.HEADER_SIZE + 3 + MAX_RACERS * RaceProtocol.POSITION_SIZE);
+    private final ByteBuffer full = ByteBuffer.allocate(delta.capacity());
+
+    // The current race: no passage while nobody is waiting, started once the countdown ends
+    private String passage;
+    private long startNanos;
+    private boolean started;
+    private int nextId;
+    // Places handed out so far; a racer who leaves keeps theirs
+    private int finishers;
+    private long nextTick;
+
+    // Time spent handling events rather than waiting in select(), for load tests
+    private volatile long busyNanos;
+    private volatile long ticks;
+    private volatile long bytesSent;
+
+    public RaceServer(InetSocketAddress address, long countdownMillis, long timeLimitMillis, int passageWords) throws IOException {
+        this.countdownNanos = countdownMillis * 1_000_000;
+        this.timeLimitNanos = timeLimitMillis * 1_000_000;
+        this.passageWords = passageWords;
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(address, 256);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    // Host races for this machine on the default port, unless this or another
+    // Keyy instance already does
+    public static synchronized void startLocal() {
+        if (local != null) return;
+        try {
+            local = new RaceServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), RaceProtocol.DEFAULT_PORT),
+                    5_000, 180_000, 30);
+            Thread thread = new Thread(local, "keyy-race");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (BindException e) {
+            // Another instance is hosting, so join its races instead
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    public long busyNanos() {
+        return busyNanos;
+    }
+
+    public long ticks() {
+        return ticks;
+    }
+
+    public long bytesSent() {
+        return bytesSent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+        server.close();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (selector.isOpen()) {
+                long timeout = passage == null ? 0 : Math.max(1, (nextDeadline() - System.nanoTime()) / 1_000_000);
+                selector.select(timeout);
+                long busyStart = System.nanoTime();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Racer racer = (Racer) key.attachment();
+                        if (key.isReadable()) read(racer);
+                        if (key.isValid() && key.isWritable()) flush(racer);
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (passage != null && !started && now >= startNanos) {
+                    startRace(now);
+                }
+                if (started && now - startNanos >= timeLimitNanos) {
+                    endRace();
+                } else if (started && now >= nextTick) {
+                    broadcastPositions();
+                    nextTick += TICK_NANOS;
+                    if (nextTick < now) nextTick = now + TICK_NANOS;
+                }
+
+                busyNanos += System.nanoTime() - busyStart;
+            }
+        } catch (ClosedSelectorException e) {
+            // Closed while waiting
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private long nextDeadline() {
+        return started ? Math.min(nextTick, startNanos + timeLimitNanos) : startNanos;
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Racer racer = new Racer(channel);
+        racer.key = channel.register(selector, SelectionKey.OP_READ, racer);
+    }
+
+    private void read(Racer racer) {
+        int count;
+        try {
+            count = racer.channel.read(racer.in);
+        } catch (IOException e) {
+            count = -1;
+        }
+        if (count < 0) {
+            drop(racer);
+            return;
+        }
+
+        racer.in.flip();
+        int length;
+        while (racer.key.isValid() && (length = RaceProtocol.frameLength(racer.in)) >= 0) {
+            int start = racer.in.position();
+            if (length > RaceProtocol.HEADER_SIZE) {
+                ByteBuffer body = racer.in.slice(start + RaceProtocol.HEADER_SIZE + 1, length - RaceProtocol.HEADER_SIZE - 1);
+                try {
+                    handle(racer, racer.in.get(start + RaceProtocol.HEADER_SIZE), body);
+                } catch (BufferUnderflowException e) {
+                    drop(racer);
+                }
+            }
+            racer.in.position(start + length);
+        }
+        racer.in.compact();
+
+        // A frame that can never fit means a broken client
+        if (racer.key.isValid() && !racer.in.hasRemaining()) {
+            drop(racer);
+        }
+    }
+
+    private void handle(Racer racer, byte type, ByteBuffer body) {
+        if (racer.closing) return;
+
+        switch (type) {
+            case RaceProtocol.HELLO:
+                if (racer.id == 0) join(racer, RaceProtocol.trimName(RaceProtocol.getString(body)));
+                break;
+            case RaceProtocol.PROGRESS:
+                if (racer.id != 0 && started) progress(racer, RaceProtocol.getUnsignedShort(body));
+                break;
+            default:
+                drop(racer);
+        }
+    }
+
+    private void join(Racer racer, String name) {
+        // Late arrivals wait for the next race
+        if (started || racers.size() >= MAX_RACERS) {
+            drop(racer);
+            return;
+        }
+
+        if (passage == null) {
+            passage = newPassage();
+            startNanos = System.nanoTime() + countdownNanos;
+            nextId = 1;
+            finishers = 0;
+        }
+        racer.id = nextId++;
+        racer.name = name;
+        racers.add(racer);
+
+        ByteBuffer out = racer.out;
+        int frame = RaceProtocol.beginFrame(out, RaceProtocol.WELCOME);
+        out.putShort((short) racer.id);
+        RaceProtocol.putString(out, passage);
+        out.putShort((short) Math.max(0, (startNanos - System.nanoTime()) / 1_000_000));
+        RaceProtocol.endFrame(out, frame);
+
+        for (Racer other : new ArrayList<>(racers)) {
+            if (!sendRacer(racer, other)) return;
+            if (other != racer && sendRacer(other, racer)) flush(other);
+        }
+        flush(racer);
+    }
+
+    // Tell one racer about another; false if the receiver was dropped
+    private boolean sendRacer(Racer to, Racer about) {
+        ByteBuffer out = to.out;
+        if (out.remaining() < 3 + 2 + 2 + RaceProtocol.MAX_NAME_BYTES * 3) {
+            drop(to);
+            return false;
+        }
+        int frame = RaceProtocol.beginFrame(out, RaceProtocol.RACER);
+        out.putShort((short) about.id);
+        RaceProtocol.putString(out, about.name);
+        RaceProtocol.endFrame(out, frame);
+        return true;
+    }
+
+    private void progress(Racer racer, int position) {
+        position = Math.min(position, passage.length());
+        if (position == racer.position || racer.finishNanos >= 0) return;
+
+        racer.position = position;
+        if (!racer.moved) {
+            racer.moved = true;
+            moved.add(racer);
+        }
+
+        if (position == passage.length()) {
+            racer.finishNanos = System.nanoTime();
+            double minutes = (racer.finishNanos - startNanos) / 60e9;
+            int wpm = (int) Math.round(passage.length() / 5.0 / minutes * 10);
+            int place = ++finishers;
+
+            for (Racer other : new ArrayList<>(racers)) {
+                if (other.out.remaining() < 3 + 6) {
+                    drop(other);
+                    continue;
+                }
+                int frame = RaceProtocol.beginFrame(other.out, RaceProtocol.FINISHED);
+                other.out.putShort((short) racer.id).putShort((short) place).putShort((short) Math.min(wpm, 0xFFFF));
+                RaceProtocol.endFrame(other.out, frame);
+                flush(other);
+            }
+
+            if (allFinished()) {
+                broadcastPositions();
+                endRace();
+            }
+        }
+    }
+
+    private void startRace(long now) {
+        started = true;
+        startNanos = now;
+        nextTick = now + TICK_NANOS;
+        for (Racer racer : new ArrayList<>(racers)) {
+            if (racer.out.remaining() < 3) {
+                drop(racer);
+                continue;
+            }
+            RaceProtocol.endFrame(racer.out, RaceProtocol.beginFrame(racer.out, RaceProtocol.START));
+            flush(racer);
+        }
+    }
+
+    private void broadcastPositions() {
+        ticks++;
+        encodePositions(delta, moved);
+        boolean fullEncoded = false;
+
+        for (Racer racer : new ArrayList<>(racers)) {
+            if (racer.behind) {
+                // Catch up with everyone's position once everything else has been sent
+                if (racer.out.position() > 0) continue;
+                if (!fullEncoded) {
+                    encodePositions(full, racers);
+                    fullEncoded = true;
+                }
+                racer.out.put(full.duplicate());
+                racer.behind = false;
+            } else if (moved.isEmpty()) {
+                continue;
+            } else if (racer.out.remaining() < delta.remaining()) {
+                racer.behind = true;
+                continue;
+            } else {
+                racer.out.put(delta.duplicate());
+            }
+            flush(racer);
+        }
+
+        for (Racer racer : moved) {
+            racer.moved = false;
+        }
+        moved.clear();
+    }
+
+    private static void encodePositions(ByteBuffer buffer, List<Racer> list) {
+        buffer.clear();
+        int frame = RaceProtocol.beginFrame(buffer, RaceProtocol.POSITIONS);
+        buffer.putShort((short) list.size());
+        for (Racer racer : list) {
+            buffer.putShort((short) racer.id).putShort((short) racer.position);
+        }
+        RaceProtocol.endFrame(buffer, frame);
+        buffer.flip();
+    }
+
+    // Send END to everyone, hang up once it is written, and wait for the next first racer
+    private void endRace() {
+        for (Racer racer : racers) {
+            racer.closing = true;
+            if (racer.out.remaining() >= 3) {
+                RaceProtocol.endFrame(racer.out, RaceProtocol.beginFrame(racer.out, RaceProtocol.END));
+            } else {
+                racer.out.clear();
+            }
+            flush(racer);
+        }
+        racers.clear();
+        moved.clear();
+        passage = null;
+        started = false;
+    }
+
+    private void flush(Racer racer) {
+        if (!racer.key.isValid()) return;
+
+        racer.out.flip();
+        try {
+            bytesSent += racer.channel.write(racer.out);
+        } catch (IOException e) {
+            racer.out.clear();
+            drop(racer);
+            return;
+        }
+        racer.out.compact();
+
+        if (racer.out.position() > 0) {
+            racer.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        } else if (racer.closing) {
+            close(racer);
+        } else {
+            racer.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void drop(Racer racer) {
+        close(racer);
+        if (!racers.remove(racer)) return;
+        if (racer.moved) moved.remove(racer);
+
+        if (racers.isEmpty()) {
+            passage = null;
+            started = false;
+            return;
+        }
+        for (Racer other : new ArrayList<>(racers)) {
+            if (other.out.remaining() < 3 + 2) {
+                drop(other);
+                continue;
+            }
+            int frame = RaceProtocol.beginFrame(other.out, RaceProtocol.LEFT);
+            other.out.putShort((short) racer.id);
+            RaceProtocol.endFrame(other.out, frame);
+            flush(other);
+        }
+        if (started && allFinished()) {
+            endRace();
+        }
+    }
+
+    // Whether everyone still connected has reached the end of the passage
+    private boolean allFinished() {
+        for (Racer racer : racers) {
+            if (racer.finishNanos < 0) return false;
+        }
+        return true;
+    }
+
+    private void close(Racer racer) {
+        racer.key.cancel();
+        try {
+            racer.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String newPassage() {
+        WordGenerator words = new WordGenerator(Corpus.words(), random);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < passageWords; i++) {
+            if (i > 0) text.append(' ');
+            text.append(words.next());
+        }
+        return text.toString();
+    }
+
+    private static class Racer {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(IN_CAPACITY);
+        final ByteBuffer out = ByteBuffer.allocate(OUT_CAPACITY);
+        SelectionKey key;
+
+        int id; // 0 until HELLO
+        String name;
+        int position;
+        long finishNanos = -1;
+        boolean moved;
+        boolean behind;
+        boolean closing;
+
+        Racer(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
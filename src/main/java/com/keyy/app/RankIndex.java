@@ -0,0 +1,126 @@
+package com.keyy.app;
+
+import java.util.*;
+
+// Order-statistic index over each user's best WPM, for the all-time ranking.
+// Bests are bucketed by tenth of a WPM, the precision scores are saved with,
+// and the buckets are laid out highest WPM first with one more at the end for
+// users without scores. A Fenwick tree over the bucket sizes gives the number
+// of users ahead of any bucket, and finds the bucket holding any rank, in
+// O(log buckets). Each bucket keeps its users sorted by name, which breaks
+// ties the same way the leaderboard does, so a rank lookup is two binary
+// searches. Moving a user shifts one bucket's array, which stays short since
+// users spread over thousands of buckets.
+public class RankIndex {
+    // Bests above 400 WPM share the top bucket
+    private static final int MAX_TENTHS = 4000;
+    private static final int UNSCORED = MAX_TENTHS + 1;
+    private static final int BUCKETS = UNSCORED + 1;
+
+    // Fenwick tree of bucket sizes, 1-based
+    private final int[] tree = new int[BUCKETS + 1];
+    private final List<List<String>> buckets = new ArrayList<>(Collections.nCopies(BUCKETS, null));
+    private final Map<String, Integer> bucketOf = new HashMap<>();
+
+    // Register a user with no scores yet; no-op for a known user
+    public synchronized void addUser(String username) {
+        if (!bucketOf.containsKey(username)) {
+            insert(username, UNSCORED);
+        }
+    }
+
+    // Record a user's new best, registering them if needed; a lower value is ignored
+    public synchronized void updateBest(String username, double bestWpm) {
+        int bucket = bucket(bestWpm);
+        Integer current = bucketOf.get(username);
+        if (current != null) {
+            if (current <= bucket) return;
+            remove(username, current);
+        }
+        insert(username, bucket);
+    }
+
+    public synchronized int size() {
+        return bucketOf.size();
+    }
+
+    // 1-based rank, or 0 for an unknown user
+    public synchronized int rankOf(String username) {
+        Integer bucket = bucketOf.get(username);
+        if (bucket == null) return 0;
+        return prefix(bucket) + Collections.binarySearch(buckets.get(bucket), username) + 1;
+    }
+
+    // Up to count usernames starting at a 0-based rank
+    public synchronized List<String> range(int from, int count) {
+        List<String> result = new ArrayList<>(Math.max(0, Math.min(count, bucketOf.size() - from)));
+        if (from < 0 || from >= bucketOf.size()) return result;
+
+        int bucket = find(from + 1);
+        int offset = from - prefix(bucket);
+        while (result.size() < count && bucket < BUCKETS) {
+            List<String> names = buckets.get(bucket);
+            for (int i = offset; i < names.size() && result.size() < count; i++) {
+                result.add(names.get(i));
+            }
+            offset = 0;
+
+            // Jump straight to the next non-empty bucket
+            int seen = prefix(bucket) + names.size();
+            if (seen >= bucketOf.size()) break;
+            bucket = find(seen + 1);
+        }
+        return result;
+    }
+
+    private static int bucket(double wpm) {
+        long tenths = Math.round(wpm * 10);
+        return MAX_TENTHS - (int) Math.max(0, Math.min(MAX_TENTHS, tenths));
+    }
+
+    private void insert(String username, int bucket) {
+        List<String> names = buckets.get(bucket);
+        if (names == null) {
+            names = new ArrayList<>();
+            buckets.set(bucket, names);
+        }
+        names.add(-Collections.binarySearch(names, username) - 1, username);
+        bucketOf.put(username, bucket);
+        adjust(bucket, 1);
+    }
+
+    private void remove(String username, int bucket) {
+        List<String> names = buckets.get(bucket);
+        names.remove(Collections.binarySearch(names, username));
+        bucketOf.remove(username);
+        adjust(bucket, -1);
+    }
+
+    private void adjust(int bucket, int delta) {
+        for (int i = bucket + 1; i <= BUCKETS; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    // Users in buckets before this one
+    private int prefix(int bucket) {
+        int sum = 0;
+        for (int i = bucket; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    // The bucket holding the user at a 1-based rank
+    private int find(int rank) {
+        int position = 0;
+        for (int step = Integer.highestOneBit(BUCKETS); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= BUCKETS && tree[next] < rank) {
+                position = next;
+                rank -= tree[next];
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,279 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// One test's keystrokes, kept for playback.
+// The passage is stored once as text. Each keystroke is then a varint of
+// (ticks since the previous keystroke << 2 | kind), followed by the typed
+// character only when it was wrong, so a typical keystroke takes two bytes
+// and a minute of typing about 1 KB. Times are captured in nanoseconds and
+// rounded to 0.1 ms ticks against the first keystroke, so rounding never
+// accumulates.
+//
+// A user's fastest replay for each test length is kept in one file as records
+// of int length | int crc | payload, where the payload is
+// float wpm | varint passage bytes | UTF-8 passage | varint keystrokes | keystrokes
+// | varint test seconds (0 for an untimed test, missing in the first records).
+// The file is replaced whole on every new best; a corrupt record ends it.
+public class Replay {
+    public static final String EXTENSION = ".replays";
+
+    public static final byte CORRECT = 0;
+    public static final byte WRONG = 1;
+    public static final byte BACKSPACE = 2;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final long TICK_NANOS = 100_000;
+
+    private final float wpm;
+    private final int seconds;
+    private final String passage;
+    private final long[] times;
+    private final byte[] kinds;
+    private final char[] typed;
+
+    Replay(float wpm, int seconds, String passage, long[] times, byte[] kinds, char[] typed) {
+        this.wpm = wpm;
+        this.seconds = seconds;
+        this.passage = passage;
+        this.times = times;
+        this.kinds = kinds;
+        this.typed = typed;
+    }
+
+    // Rebuild the passage and keystrokes from a test's buffer. Returns null if
+    // the buffer is empty or has overwritten the start of the test.
+    public static Replay capture(KeystrokeBuffer keystrokes, float wpm, int seconds) {
+        int size = keystrokes.size();
+        if (size == 0 || keystrokes.totalRecorded() != size) return null;
+
+        long[] times = new long[size];
+        byte[] kinds = new byte[size];
+        char[] typed = new char[size];
+        char[] passage = new char[size];
+        int position = 0;
+        int length = 0;
+        long start = keystrokes.time(0);
+
+        for (int i = 0; i < size; i++) {
+            times[i] = keystrokes.time(i) - start;
+            typed[i] = keystrokes.typed(i);
+            if (keystrokes.isBackspace(i)) {
+                kinds[i] = BACKSPACE;
+                position = Math.max(0, position - 1);
+            } else {
+                kinds[i] = keystrokes.isCorrect(i) ? CORRECT : WRONG;
+                passage[position++] = keystrokes.expected(i);
+                length = Math.max(length, position);
+            }
+        }
+        return new Replay(wpm, seconds, new String(passage, 0, length), times, kinds, typed);
+    }
+
+    public float wpm() {
+        return wpm;
+    }
+
+    // Length of the timed test, 0 if untimed, -1 if not recorded
+    public int seconds() {
+        return seconds;
+    }
+
+    public String passage() {
+        return passage;
+    }
+
+    public int size() {
+        return times.length;
+    }
+
+    // Nanoseconds from the first keystroke
+    public long time(int index) {
+        return times[index];
+    }
+
+    public long duration() {
+        return times.length == 0 ? 0 : times[times.length - 1];
+    }
+
+    public byte kind(int index) {
+        return kinds[index];
+    }
+
+    public char typed(int index) {
+        return typed[index];
+    }
+
+    public byte[] encode() {
+        byte[] text = passage.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer out = ByteBuffer.allocate(4 + 10 + text.length + 5 + times.length * 13);
+        out.putFloat(wpm);
+        putVarint(out, text.length);
+        out.put(text);
+        putVarint(out, times.length);
+
+        long previousTicks = 0;
+        for (int i = 0; i < times.length; i++) {
+            long ticks = times[i] / TICK_NANOS;
+            putVarint(out, (ticks - previousTicks) << 2 | kinds[i]);
+            if (kinds[i] == WRONG) {
+                putVarint(out, typed[i]);
+            }
+            previousTicks = ticks;
+        }
+        putVarint(out, seconds);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    public static Replay decode(ByteBuffer in) {
+        float wpm = in.getFloat();
+        byte[] text = new byte[(int) getVarint(in)];
+        in.get(text);
+        String passage = new String(text, StandardCharsets.UTF_8);
+
+        int size = (int) getVarint(in);
+        long[] times = new long[size];
+        byte[] kinds = new byte[size];
+        char[] typed = new char[size];
+        long ticks = 0;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            long value = getVarint(in);
+            ticks += value >>> 2;
+            times[i] = ticks * TICK_NANOS;
+            kinds[i] = (byte) (value & 3);
+
+            // Correct keys and backspaces are implied by the passage
+            if (kinds[i] == BACKSPACE) {
+                typed[i] = '\b';
+                position = Math.max(0, position - 1);
+            } else {
+                typed[i] = kinds[i] == WRONG ? (char) getVarint(in) : passage.charAt(position);
+                position++;
+            }
+        }
+        int seconds = in.hasRemaining() ? (int) getVarint(in) : -1;
+        return new Replay(wpm, seconds, passage, times, kinds, typed);
+    }
+
+    // Keep a replay if it is the user's fastest for its test length. The file
+    // holds one record per length and is replaced whole, so saving costs the
+    // same however many tests the user has taken. A file from before, with a
+    // record for every test, is cut down to the bests on the first save.
+    public static void saveBest(Path file, Replay replay) throws IOException {
+        ByteBuffer data = readAll(file);
+        int end = (int) validEnd(data);
+
+        // Test length -> that length's fastest record, in file order
+        Map<Integer, Replay> bests = new LinkedHashMap<>();
+        Map<Integer, byte[]> payloads = new HashMap<>();
+        int records = 0;
+        for (int position = 0; position < end; position += RECORD_HEADER_SIZE + data.getInt(position)) {
+            records++;
+            int length = data.getInt(position);
+            Replay candidate = decode(ByteBuffer.wrap(data.array(), position + RECORD_HEADER_SIZE, length));
+            Replay best = bests.get(candidate.seconds);
+            // Records from before the length was saved can never be raced against
+            if (candidate.seconds < 0 || best != null && candidate.wpm <= best.wpm) continue;
+
+            bests.put(candidate.seconds, candidate);
+            payloads.put(candidate.seconds, Arrays.copyOfRange(data.array(),
+                    position + RECORD_HEADER_SIZE, position + RECORD_HEADER_SIZE + length));
+        }
+
+        Replay best = bests.get(replay.seconds);
+        boolean faster = best == null || replay.wpm > best.wpm;
+        if (faster) {
+            bests.put(replay.seconds, replay);
+            payloads.put(replay.seconds, replay.encode());
+        }
+        if (!faster && records == bests.size() && end == data.limit()) return;
+
+        int size = 0;
+        for (byte[] payload : payloads.values()) {
+            size += RECORD_HEADER_SIZE + payload.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (Integer seconds : bests.keySet()) {
+            byte[] payload = payloads.get(seconds);
+            crc.reset();
+            crc.update(payload);
+            out.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        out.flip();
+        ScoreLog.replace(file, out);
+    }
+
+    // The fastest replay of a test of the given length, or null. Only records
+    // faster than the best so far are decoded to check their length.
+    public static Replay best(Path file, int seconds) throws IOException {
+        ByteBuffer data = readAll(file);
+        Replay best = null;
+        int end = (int) validEnd(data);
+        for (int position = 0; position < end; position += RECORD_HEADER_SIZE + data.getInt(position)) {
+            int start = position + RECORD_HEADER_SIZE;
+            if (best != null && data.getFloat(start) <= best.wpm) continue;
+
+            Replay candidate = decode(ByteBuffer.wrap(data.array(), start, data.getInt(position)));
+            if (candidate.seconds == seconds) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private static ByteBuffer readAll(Path file) throws IOException {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return ByteBuffer.allocate(0);
+        }
+    }
+
+    // Where the intact records end; a torn or corrupt one ends the file
+    private static long validEnd(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + RECORD_HEADER_SIZE <= data.limit()) {
+            int length = data.getInt(position);
+            int start = position + RECORD_HEADER_SIZE;
+            if (length < 4 || length > data.limit() - start) break;
+
+            crc.reset();
+            crc.update(data.array(), start, length);
+            if ((int) crc.getValue() != data.getInt(position + 4)) break;
+
+            position = start + length;
+        }
+        return position;
+    }
+
+    private static void putVarint(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
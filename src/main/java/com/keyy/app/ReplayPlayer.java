@@ -0,0 +1,109 @@
+package com.keyy.app;
+
+import javafx.animation.AnimationTimer;
+
+import java.util.function.LongConsumer;
+
+// Plays a Replay back onto a TypingSurface.
+// One AnimationTimer advances a playback clock by the frame time times the
+// speed and applies every keystroke it has passed, so playback costs the same
+// at 1x and 16x. The surface keeps the same short window of text as a live
+// timed test: lines scroll away as the cursor moves down.
+public final class ReplayPlayer extends AnimationTimer {
+    private static final int LOOKAHEAD_CHARS = 160;
+
+    private final Replay replay;
+    private final TypingSurface surface;
+    private final LongConsumer onFrame;
+
+    private double speed = 1;
+    private long lastFrame = -1;
+    private double position;
+
+    // Next keystroke to apply, cursor in the surface and next passage character to show
+    private int next;
+    private int cursor;
+    private int shown;
+
+    // onFrame receives the playback position in nanoseconds after each frame
+    public ReplayPlayer(Replay replay, TypingSurface surface, LongConsumer onFrame) {
+        this.replay = replay;
+        this.surface = surface;
+        this.onFrame = onFrame;
+        rewind();
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public boolean isFinished() {
+        return next >= replay.size();
+    }
+
+    // Back to the first keystroke, showing the untyped passage
+    public void rewind() {
+        position = 0;
+        lastFrame = -1;
+        next = 0;
+        cursor = 0;
+        shown = 0;
+        surface.setText("");
+        fillAhead();
+    }
+
+    @Override
+    public void start() {
+        lastFrame = -1;
+        super.start();
+    }
+
+    @Override
+    public void handle(long now) {
+        if (lastFrame >= 0) {
+            position += (now - lastFrame) * speed;
+        }
+        lastFrame = now;
+
+        while (next < replay.size() && replay.time(next) <= position) {
+            apply(next++);
+        }
+        onFrame.accept(Math.min((long) position, replay.duration()));
+
+        if (isFinished()) {
+            stop();
+        }
+    }
+
+    private void apply(int index) {
+        if (replay.kind(index) == Replay.BACKSPACE) {
+            if (cursor > 0) {
+                cursor--;
+                surface.setState(cursor, TypingSurface.UNTYPED);
+                surface.setCursor(cursor);
+            }
+            return;
+        }
+        if (cursor >= surface.length()) return;
+
+        surface.setState(cursor, replay.kind(index) == Replay.CORRECT ? TypingSurface.CORRECT : TypingSurface.WRONG);
+        cursor++;
+        surface.setCursor(cursor);
+
+        if (surface.rowOf(cursor) >= 2) {
+            cursor -= surface.dropLines(1);
+        }
+        fillAhead();
+    }
+
+    // Show passage text up to a few lines past the cursor, a whole word at a time
+    private void fillAhead() {
+        String passage = replay.passage();
+        if (shown >= passage.length() || surface.length() - cursor >= LOOKAHEAD_CHARS) return;
+
+        int end = Math.min(passage.length(), shown + LOOKAHEAD_CHARS - (surface.length() - cursor));
+        while (end < passage.length() && passage.charAt(end - 1) != ' ') end++;
+        surface.append(passage.subSequence(shown, end));
+        shown = end;
+    }
+}
@@ -0,0 +1,97 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+// Distribution of every saved WPM, for percentiles on the results screens.
+// A QuantileSketch of all scores is kept in a small file shared by every
+// instance using the same user_data. Each new score is merged into the file
+// under a lock: read the current sketch, add the score, write it back. When
+// there is no file yet, or it cannot be read, the sketch is rebuilt from the
+// stored history instead. A rebuild waits for the score writer while holding
+// the lock, so it must be one the writer never takes.
+// Queries read an immutable snapshot taken after the last load or merge, so
+// they never touch the disk or wait for a writer.
+public class ScoreDistribution {
+    private static final String LOCK_KEY = "wpm.sketch";
+
+    private final Path file;
+    private final StripedFileLock locks;
+    // Adds every stored score to the sketch it is given
+    private final Consumer<QuantileSketch> history;
+    private volatile QuantileSketch.Quantiles snapshot = QuantileSketch.Quantiles.EMPTY;
+    private boolean loaded;
+
+    public ScoreDistribution(Path file, StripedFileLock locks, Consumer<QuantileSketch> history) {
+        this.file = file;
+        this.locks = locks;
+        this.history = history;
+    }
+
+    // Read the sketch, building it first if needed; no-op once loaded
+    public synchronized void load() throws IOException {
+        if (loaded) return;
+
+        locks.run(LOCK_KEY, () -> {
+            QuantileSketch sketch = read();
+            if (sketch == null) {
+                sketch = rebuild();
+            }
+            snapshot = sketch.quantiles();
+        });
+        loaded = true;
+    }
+
+    // Merge a score that has just been stored into the shared sketch
+    public synchronized void record(float wpm) throws IOException {
+        locks.run(LOCK_KEY, () -> {
+            // Start from the file so scores merged by other instances are kept
+            QuantileSketch sketch = read();
+            if (sketch == null) {
+                // The history already holds this score
+                sketch = rebuild();
+            } else {
+                sketch.update(wpm);
+                ScoreLog.replace(file, sketch.encode());
+            }
+            snapshot = sketch.quantiles();
+        });
+        loaded = true;
+    }
+
+    // Percent of saved scores below a WPM, 0 when there are none
+    public double percentBelow(double wpm) {
+        return snapshot.percentBelow(wpm);
+    }
+
+    public double averageWpm() {
+        return snapshot.mean();
+    }
+
+    public long count() {
+        return snapshot.count();
+    }
+
+    private QuantileSketch rebuild() throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        history.accept(sketch);
+        ScoreLog.replace(file, sketch.encode());
+        return sketch;
+    }
+
+    // The sketch on disk, or null if missing or unreadable
+    private QuantileSketch read() {
+        try {
+            return QuantileSketch.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Write-ahead log for saved scores.
+// Every score is appended here, with a checksum, before it is queued for its
+// score file. Once everything queued has been written the journal is cut back
+// to its header. After a crash, the entries still in the journal are the ones
+// that may not have reached their score files.
+//
+// Each running instance owns one journal, held with a file lock for as long
+// as it runs: the first free one of scores.journal, scores-1.journal and so
+// on. The journal's slot number is kept in the top bits of its sequence
+// numbers, so records written through different journals never share one.
+//
+// Layout: int magic | short version | short unused | long next seq, then
+// records of int length | int crc | payload, where the payload is
+// long seq | float wpm | float accuracy | int seconds | int epoch day | UTF-8 name
+public class ScoreJournal implements AutoCloseable {
+    private static final int MAGIC = 0x4B59534A; // "KYSJ"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int FIXED_PAYLOAD_SIZE = 24;
+    private static final int MAX_NAME_BYTES = 1024;
+
+    public static final int MAX_SLOTS = 16;
+    private static final int SLOT_SHIFT = 48;
+    private static final long COUNTER_MASK = (1L << SLOT_SHIFT) - 1;
+
+    private final FileChannel channel;
+    private final int slot;
+    private final CRC32 crc = new CRC32();
+    private long nextSeq = 1;
+
+    // Entries appended and written out since the last checkpoint
+    private long appended;
+    private long applied;
+
+    private ScoreJournal(FileChannel channel, int slot, Path file) throws IOException {
+        this.channel = channel;
+        this.slot = slot;
+
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader();
+            channel.truncate(HEADER_SIZE);
+            channel.force(true);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(header, 0);
+            if (header.getInt(0) != MAGIC || header.getShort(4) != VERSION) {
+                throw new IOException("Not a score journal: " + file);
+            }
+            nextSeq = header.getLong(8);
+        }
+    }
+
+    // Take the first journal in the directory that no other instance holds
+    public static ScoreJournal claim(Path directory) throws IOException {
+        for (int slot = 0; slot < MAX_SLOTS; slot++) {
+            ScoreJournal journal = tryOpen(directory, slot);
+            if (journal != null) return journal;
+        }
+        throw new IOException("Every score journal in " + directory + " is in use");
+    }
+
+    // Open and lock a journal, or return null if another instance holds it
+    public static ScoreJournal tryOpen(Path directory, int slot) throws IOException {
+        Path file = file(directory, slot);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null; // Held by this process
+            }
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            return new ScoreJournal(channel, slot, file);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static Path file(Path directory, int slot) {
+        return directory.resolve(slot == 0 ? "scores.journal" : "scores-" + slot + ".journal");
+    }
+
+    public int slot() {
+        return slot;
+    }
+
+    // Entries left by the previous run, oldest first. A torn or corrupt
+    // record ends the log; it and anything after it are discarded.
+    public synchronized List<Entry> readPending() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long position = HEADER_SIZE;
+        long size = channel.size();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+        while (position + RECORD_HEADER_SIZE <= size) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            int length = recordHeader.getInt(0);
+            if (length < FIXED_PAYLOAD_SIZE || length > FIXED_PAYLOAD_SIZE + MAX_NAME_BYTES
+                    || position + RECORD_HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_SIZE);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != recordHeader.getInt(4)) {
+                break;
+            }
+
+            Entry entry = new Entry(
+                    new String(payload.array(), FIXED_PAYLOAD_SIZE, length - FIXED_PAYLOAD_SIZE, StandardCharsets.UTF_8),
+                    payload.getFloat(8), payload.getFloat(12), payload.getInt(16), payload.getInt(20));
+            entry.seq = payload.getLong(0);
+            entries.add(entry);
+            nextSeq = Math.max(nextSeq, (entry.seq & COUNTER_MASK) + 1);
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return entries;
+    }
+
+    // Append an entry, assigning its sequence number
+    public synchronized void append(Entry entry, boolean force) throws IOException {
+        byte[] name = entry.username.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IOException("Username too long for the journal");
+        }
+
+        entry.seq = (long) slot << SLOT_SHIFT | nextSeq++;
+        int length = FIXED_PAYLOAD_SIZE + name.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(0)
+                .putLong(entry.seq)
+                .putFloat(entry.wpm)
+                .putFloat(entry.accuracy)
+                .putInt(entry.seconds)
+                .putInt(entry.epochDay)
+                .put(name);
+
+        crc.reset();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        channel.position(channel.size());
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        if (force) {
+            channel.force(false);
+        }
+        appended++;
+        entry.journaled = true;
+    }
+
+    // Note that entries reached their score files; once all of them have,
+    // the journal is cut back to its header. Entries still being retried
+    // keep it from being cut until they are written too.
+    public synchronized void markApplied(List<Entry> entries) throws IOException {
+        for (Entry entry : entries) {
+            // Entries whose append failed were never counted
+            if (entry.journaled) applied++;
+        }
+        if (applied == appended) {
+            checkpoint();
+        }
+    }
+
+    // Drop every entry, keeping the sequence counter
+    public synchronized void checkpoint() throws IOException {
+        writeHeader();
+        channel.truncate(HEADER_SIZE);
+        channel.force(true);
+        appended = 0;
+        applied = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(nextSeq);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+    }
+
+    public static class Entry {
+        final String username;
+        final float wpm;
+        final float accuracy;
+        final int seconds;
+        final int epochDay;
+        long seq;
+        boolean journaled;
+
+        public Entry(String username, float wpm, float accuracy, int seconds, int epochDay) {
+            this.username = username;
+            this.wpm = wpm;
+            this.accuracy = accuracy;
+            this.seconds = seconds;
+            this.epochDay = epochDay;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.keyy.app;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+// Binary score file: an 8 byte header followed by fixed-width records of
+//   float wpm | float accuracy | int seconds | int epoch day | long seq | int crc
+// Records are only ever appended, and reading maps the file and walks it in
+// place, so no Strings are created per record. The sequence number ties a
+// record to its journal entry and the CRC exposes torn writes.
+public class ScoreLog {
+    public static final String EXTENSION = ".dat";
+
+    static final int MAGIC = 0x4B595343; // "KYSC"
+    static final short VERSION = 2;
+    static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 28;
+
+    // Checksummed part of a record
+    private static final int PAYLOAD_SIZE = 24;
+
+    // First format: the same fields without seq and crc
+    private static final short VERSION_1 = 1;
+    private static final int RECORD_SIZE_1 = 16;
+
+    private ScoreLog() {
+    }
+
+    // Create an empty log containing only the header
+    public static void create(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            writeFully(channel, header());
+            channel.force(true);
+        }
+    }
+
+    // Append encoded records in one write, writing the header first if the
+    // file is new, and optionally forcing them to disk
+    public static void appendRecords(Path file, ByteBuffer records, boolean force) throws IOException {
+        if (needsUpgrade(file)) {
+            upgrade(file);
+        }
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long size = channel.size();
+            if (size == 0) {
+                writeFully(channel, header());
+            } else if ((size - HEADER_SIZE) % RECORD_SIZE != 0) {
+                // Drop a partial record left by a crash so appends stay aligned
+                channel.truncate(HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE);
+            }
+            writeFully(channel, records);
+            if (force) {
+                channel.force(false);
+            }
+        }
+    }
+
+    // Open a cursor over every complete, intact record in the file
+    public static Cursor open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                return new Cursor(ByteBuffer.allocate(0), RECORD_SIZE);
+            }
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int recordSize = recordSize(mapped, file);
+
+            // Ignore a trailing partial record
+            long usable = HEADER_SIZE + (size - HEADER_SIZE) / recordSize * recordSize;
+            mapped.position(HEADER_SIZE).limit((int) usable);
+            return new Cursor(mapped.slice(), recordSize);
+        }
+    }
+
+    // Cut off a torn last record and return the sequence number of the last
+    // intact one (0 if there is none). Only the tail is examined: appends are
+    // the only writes, so nothing earlier can be damaged by a crash.
+    public static long repairTail(Path file) throws IOException {
+        if (needsUpgrade(file)) {
+            upgrade(file);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                channel.truncate(0);
+                return 0;
+            }
+
+            long end = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+            ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+            CRC32 crc = new CRC32();
+            while (end > HEADER_SIZE) {
+                record.clear();
+                readFully(channel, record, end - RECORD_SIZE);
+                if (checksumMatches(record, 0, crc)) {
+                    break;
+                }
+                end -= RECORD_SIZE;
+            }
+
+            if (end < size) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            return end > HEADER_SIZE ? record.getLong(16) : 0;
+        }
+    }
+
+    // Rewrite a version 1 log in the current format. The new file is built
+    // next to the old one and renamed over it, so a crash leaves one or the
+    // other intact. Returns false if the file was already current.
+    public static boolean upgrade(Path file) throws IOException {
+        Cursor cursor = open(file);
+        if (cursor.recordSize == RECORD_SIZE) {
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + cursor.size() * RECORD_SIZE);
+        buffer.put(header());
+        while (cursor.next()) {
+            putRecord(buffer, cursor.wpm(), cursor.accuracy(), cursor.seconds(), cursor.epochDay(), 0);
+        }
+        buffer.flip();
+        replace(file, buffer);
+        return true;
+    }
+
+    // Convert an old CSV score file ("wpm,accuracy,seconds,date" per line).
+    // The log is written to a temp file and moved into place, and the text
+    // file is kept as .bak, so an interrupted migration simply runs again.
+    public static void migrate(Path textFile, Path logFile) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        out.write(header().array());
+
+        try (BufferedReader reader = Files.newBufferedReader(textFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length != 4) continue;
+
+                try {
+                    float wpm = Float.parseFloat(parts[0]);
+                    float accuracy = Float.parseFloat(parts[1]);
+                    int seconds = Integer.parseInt(parts[2]);
+                    LocalDate date = LocalDate.parse(parts[3]);
+
+                    buffer.clear();
+                    putRecord(buffer, wpm, accuracy, seconds, (int) date.toEpochDay(), 0);
+                    out.write(buffer.array());
+                } catch (RuntimeException e) {
+                    // Skip lines the old reader would also have rejected
+                }
+            }
+        }
+
+        replace(logFile, ByteBuffer.wrap(out.toByteArray()));
+        Files.move(textFile, textFile.resolveSibling(textFile.getFileName() + ".bak"),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Encode one record, checksum included
+    static void putRecord(ByteBuffer buffer, float wpm, float accuracy, int seconds, int epochDay, long seq) {
+        int start = buffer.position();
+        buffer.putFloat(wpm)
+                .putFloat(accuracy)
+                .putInt(seconds)
+                .putInt(epochDay)
+                .putLong(seq);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, PAYLOAD_SIZE);
+        buffer.putInt((int) crc.getValue());
+    }
+
+    // Atomically replace a file with the given contents
+    static void replace(Path file, ByteBuffer contents) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, contents);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // True for an existing log written in an older format
+    private static boolean needsUpgrade(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return false;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            return recordSize(header, file) != RECORD_SIZE;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_SIZE);
+        header.flip();
+        return header;
+    }
+
+    private static int recordSize(ByteBuffer header, Path file) throws IOException {
+        if (header.getInt(0) == MAGIC) {
+            short version = header.getShort(4);
+            if (version == VERSION) return RECORD_SIZE;
+            if (version == VERSION_1) return RECORD_SIZE_1;
+        }
+        throw new IOException("Not a score log: " + file);
+    }
+
+    private static boolean checksumMatches(ByteBuffer records, int offset, CRC32 crc) {
+        ByteBuffer payload = records.duplicate();
+        payload.limit(offset + PAYLOAD_SIZE).position(offset);
+        crc.reset();
+        crc.update(payload);
+        return (int) crc.getValue() == records.getInt(offset + PAYLOAD_SIZE);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Forward-only view over the records of a log.
+    // Call next() before reading each record's fields; records that fail
+    // their checksum are skipped.
+    public static class Cursor {
+        private final ByteBuffer records;
+        private final int recordSize;
+        private final CRC32 crc = new CRC32();
+        private int offset;
+
+        Cursor(ByteBuffer records, int recordSize) {
+            this.records = records;
+            this.recordSize = recordSize;
+            this.offset = -recordSize;
+        }
+
+        public boolean next() {
+            while (offset + 2 * recordSize <= records.limit()) {
+                offset += recordSize;
+                if (recordSize == RECORD_SIZE_1 || checksumMatches(records, offset, crc)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public int size() {
+            return records.limit() / recordSize;
+        }
+
+        public float wpm() {
+            return records.getFloat(offset);
+        }
+
+        public float accuracy() {
+            return records.getFloat(offset + 4);
+        }
+
+        public int seconds() {
+            return records.getInt(offset + 8);
+        }
+
+        public int epochDay() {
+            return records.getInt(offset + 12);
+        }
+
+        // Journal sequence number, 0 for records that predate the journal
+        public long seq() {
+            return recordSize == RECORD_SIZE ? records.getLong(offset + 16) : 0;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.keyy.app;
+
+// Callback for streaming a user's score history one record at a time
+@FunctionalInterface
+public interface ScoreVisitor {
+    void visit(float wpm, float accuracy, int seconds, int epochDay);
+}
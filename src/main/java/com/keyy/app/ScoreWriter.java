@@ -0,0 +1,294 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Write-behind queue for finished tests.
+// saveScore only journals and enqueues; a background thread drains whatever
+// has piled up and appends it with one write per score file. Pending scores
+// are flushed before any read of the score files and when the application
+// exits, and anything lost to a crash is replayed from the journal on the
+// next start.
+//
+// Several instances may share the score files. Each appends under its user's
+// stripe of a StripedFileLock, so a tail repair or an append never overlaps
+// another instance's write to the same file, while writes for other users go
+// ahead in parallel.
+public class ScoreWriter {
+    // When scores are forced to disk, set with -Dkeyy.fsync=never|batch|always:
+    // never leaves it to the OS, batch forces the score files once per drained
+    // batch, and always also forces the journal before submit() returns.
+    public enum FsyncPolicy { NEVER, BATCH, ALWAYS }
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+
+    // Queued by close() after the last score; the worker stops when it sees it
+    private static final ScoreJournal.Entry STOP = new ScoreJournal.Entry("", 0, 0, 0, 0);
+
+    private final BlockingQueue<ScoreJournal.Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ScoreJournal journal;
+    private final Function<String, Path> scoreFiles;
+    private final StripedFileLock locks;
+    private final FsyncPolicy fsyncPolicy;
+    private Thread worker;
+    private Thread shutdownHook;
+
+    // Submitted vs. written counts, used by flush(); a score whose write
+    // failed counts as written once tried, and is retried in the background
+    private final Object progress = new Object();
+    private long submitted;
+    private long written;
+    private volatile boolean closed;
+
+    // Recover what earlier runs left in the journals, then start writing
+    public static ScoreWriter open(Path journalDirectory, Function<String, Path> scoreFiles, StripedFileLock locks,
+                                   FsyncPolicy fsyncPolicy) throws IOException {
+        ScoreWriter writer = new ScoreWriter(journalDirectory, scoreFiles, locks, fsyncPolicy);
+        writer.start();
+        return writer;
+    }
+
+    private ScoreWriter(Path journalDirectory, Function<String, Path> scoreFiles, StripedFileLock locks,
+                        FsyncPolicy fsyncPolicy) throws IOException {
+        this.journal = ScoreJournal.claim(journalDirectory);
+        this.scoreFiles = scoreFiles;
+        this.locks = locks;
+        this.fsyncPolicy = fsyncPolicy;
+
+        recover(journal);
+
+        // Also finish the work of instances that crashed and have not come back
+        for (int slot = 0; slot < ScoreJournal.MAX_SLOTS; slot++) {
+            if (slot == journal.slot() || !Files.exists(ScoreJournal.file(journalDirectory, slot))) continue;
+            try (ScoreJournal orphan = ScoreJournal.tryOpen(journalDirectory, slot)) {
+                if (orphan != null) recover(orphan);
+            }
+        }
+    }
+
+    // Started only once the writer is fully constructed
+    private void start() {
+        worker = new Thread(this::run, "keyy-score-writer");
+        worker.setDaemon(true);
+        worker.start();
+
+        shutdownHook = new Thread(this::close, "keyy-score-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    public static FsyncPolicy configuredPolicy() {
+        String value = System.getProperty("keyy.fsync", "batch");
+        try {
+            return FsyncPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return FsyncPolicy.BATCH;
+        }
+    }
+
+    // Queue a score, blocking only if the writer is far behind
+    public synchronized void submit(String username, float wpm, float accuracy, int seconds, int epochDay) {
+        if (closed) {
+            throw new IllegalStateException("Score writer is closed");
+        }
+
+        ScoreJournal.Entry entry = new ScoreJournal.Entry(username, wpm, accuracy, seconds, epochDay);
+        try {
+            journal.append(entry, fsyncPolicy == FsyncPolicy.ALWAYS);
+        } catch (IOException e) {
+            // Still try to write the score itself, just without the safety net
+            e.printStackTrace();
+        }
+
+        synchronized (progress) {
+            submitted++;
+        }
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (progress) {
+                written++;
+                progress.notifyAll();
+            }
+        }
+    }
+
+    // Wait until everything submitted so far has been written
+    public void flush() {
+        synchronized (progress) {
+            long target = submitted;
+            while (written < target && worker.isAlive()) {
+                try {
+                    progress.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Flush, stop the worker and give up the journal; safe to call more than once
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        flush();
+
+        try {
+            if (worker.isAlive()) {
+                queue.put(STOP);
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down, possibly in the hook itself
+        }
+    }
+
+    // Re-apply journal entries that never made it into their score file.
+    // Each score file is repaired at its tail and then searched for the
+    // entries' sequence numbers; only the ones it lacks are appended, so
+    // replay is idempotent even when other instances appended in between.
+    private void recover(ScoreJournal journal) throws IOException {
+        List<ScoreJournal.Entry> pending = journal.readPending();
+        if (!pending.isEmpty()) {
+            Map<String, List<ScoreJournal.Entry>> byUser = groupByUser(pending);
+            for (Map.Entry<String, List<ScoreJournal.Entry>> user : byUser.entrySet()) {
+                Path file = scoreFiles.apply(user.getKey());
+                locks.run(user.getKey(), () -> {
+                    if (Files.exists(file)) {
+                        ScoreLog.repairTail(file);
+                    }
+                    List<ScoreJournal.Entry> missing = missing(file, user.getValue());
+                    if (!missing.isEmpty()) {
+                        ScoreLog.appendRecords(file, encode(missing), true);
+                    }
+                });
+            }
+        }
+        journal.checkpoint();
+    }
+
+    // The entries whose sequence numbers are not in a score file yet
+    private static List<ScoreJournal.Entry> missing(Path file, List<ScoreJournal.Entry> entries) throws IOException {
+        Set<Long> written = new HashSet<>();
+        if (Files.exists(file)) {
+            ScoreLog.Cursor cursor = ScoreLog.open(file);
+            while (cursor.next()) {
+                written.add(cursor.seq());
+            }
+        }
+
+        List<ScoreJournal.Entry> missing = new ArrayList<>();
+        for (ScoreJournal.Entry entry : entries) {
+            if (!written.contains(entry.seq)) {
+                missing.add(entry);
+            }
+        }
+        return missing;
+    }
+
+    private void run() {
+        // Entries whose score file could not be written, retried ahead of
+        // newer ones with a growing delay
+        List<ScoreJournal.Entry> retry = new ArrayList<>();
+        long backoff = MIN_RETRY_MILLIS;
+
+        while (true) {
+            List<ScoreJournal.Entry> batch = new ArrayList<>(retry);
+            int retried = retry.size();
+            retry.clear();
+            try {
+                if (retried == 0) {
+                    batch.add(queue.take());
+                } else {
+                    ScoreJournal.Entry next = queue.poll(backoff, TimeUnit.MILLISECONDS);
+                    if (next != null) batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, Math.max(0, MAX_BATCH - batch.size()));
+            // Nothing is queued after STOP, so this is the last batch
+            boolean stopping = batch.remove(STOP);
+
+            List<ScoreJournal.Entry> failed = writeBatch(batch, retried > 0);
+            try {
+                List<ScoreJournal.Entry> done = new ArrayList<>(batch);
+                done.removeAll(failed);
+                journal.markApplied(done);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            retry.addAll(failed);
+            backoff = failed.isEmpty() ? MIN_RETRY_MILLIS : Math.min(backoff * 2, MAX_RETRY_MILLIS);
+
+            // Retried entries were counted on their first attempt
+            synchronized (progress) {
+                written += batch.size() - retried;
+                progress.notifyAll();
+            }
+            // Entries still failing stay in the journal for the next start
+            if (stopping) return;
+        }
+    }
+
+    // Append each user's share of the batch with a single write.
+    // Returns the entries of any user whose file failed, oldest first; they
+    // stay in the journal until a retry writes them. A failed write may have
+    // got some records in, so a retry skips the ones already there.
+    private List<ScoreJournal.Entry> writeBatch(List<ScoreJournal.Entry> batch, boolean retrying) {
+        List<ScoreJournal.Entry> failed = new ArrayList<>();
+        for (Map.Entry<String, List<ScoreJournal.Entry>> user : groupByUser(batch).entrySet()) {
+            Path file = scoreFiles.apply(user.getKey());
+            try {
+                locks.run(user.getKey(), () -> {
+                    List<ScoreJournal.Entry> entries = retrying ? missing(file, user.getValue()) : user.getValue();
+                    if (!entries.isEmpty()) {
+                        ScoreLog.appendRecords(file, encode(entries), fsyncPolicy != FsyncPolicy.NEVER);
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed.addAll(user.getValue());
+            }
+        }
+        return failed;
+    }
+
+    private static Map<String, List<ScoreJournal.Entry>> groupByUser(List<ScoreJournal.Entry> entries) {
+        Map<String, List<ScoreJournal.Entry>> byUser = new LinkedHashMap<>();
+        for (ScoreJournal.Entry entry : entries) {
+            byUser.computeIfAbsent(entry.username, u -> new ArrayList<>()).add(entry);
+        }
+        return byUser;
+    }
+
+    private static ByteBuffer encode(List<ScoreJournal.Entry> entries) {
+        ByteBuffer records = ByteBuffer.allocate(entries.size() * ScoreLog.RECORD_SIZE);
+        for (ScoreJournal.Entry entry : entries) {
+            ScoreLog.putRecord(records, entry.wpm, entry.accuracy, entry.seconds, entry.epochDay, entry.seq);
+        }
+        records.flip();
+        return records;
+    }
+}
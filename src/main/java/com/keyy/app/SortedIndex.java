@@ -0,0 +1,189 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Secondary index from a 64-bit key to record numbers in a log, as two
+// sorted runs of primitive arrays: a large base run and a small tail that new
+// entries are inserted into. When the tail fills up it is merged into the
+// base, so an insert costs at most a shift of the tail and the base is
+// rewritten once per TAIL_CAPACITY inserts. Scans merge both runs on the fly.
+// Equal keys keep insertion order.
+//
+// The index can be saved to a file together with how many log records it
+// covers, so the next start only indexes the records appended after that.
+public class SortedIndex {
+    private static final int MAGIC = 0x4B594958; // "KYIX"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int ENTRY_SIZE = 12;
+    private static final int TAIL_CAPACITY = 1024;
+
+    // Receives entries in key order; return false to stop the scan
+    @FunctionalInterface
+    public interface EntryVisitor {
+        boolean visit(long key, int record);
+    }
+
+    private long[] baseKeys = new long[0];
+    private int[] baseRecords = new int[0];
+    private int baseSize;
+
+    private final long[] tailKeys = new long[TAIL_CAPACITY];
+    private final int[] tailRecords = new int[TAIL_CAPACITY];
+    private int tailSize;
+
+    public void add(long key, int record) {
+        if (tailSize == TAIL_CAPACITY) {
+            mergeTail();
+        }
+        int at = upperBound(tailKeys, tailSize, key);
+        System.arraycopy(tailKeys, at, tailKeys, at + 1, tailSize - at);
+        System.arraycopy(tailRecords, at, tailRecords, at + 1, tailSize - at);
+        tailKeys[at] = key;
+        tailRecords[at] = record;
+        tailSize++;
+    }
+
+    public int size() {
+        return baseSize + tailSize;
+    }
+
+    // Visit entries with from <= key <= to in key order
+    public void scan(long from, long to, EntryVisitor visitor) {
+        int b = lowerBound(baseKeys, baseSize, from);
+        int t = lowerBound(tailKeys, tailSize, from);
+        while (true) {
+            boolean baseNext = b < baseSize && baseKeys[b] <= to;
+            boolean tailNext = t < tailSize && tailKeys[t] <= to;
+            if (!baseNext && !tailNext) return;
+
+            // Base entries were added before tail entries, so they go first on ties
+            boolean continuing;
+            if (baseNext && (!tailNext || baseKeys[b] <= tailKeys[t])) {
+                continuing = visitor.visit(baseKeys[b], baseRecords[b]);
+                b++;
+            } else {
+                continuing = visitor.visit(tailKeys[t], tailRecords[t]);
+                t++;
+            }
+            if (!continuing) return;
+        }
+    }
+
+    // Merge from the back so the base can be merged into in place
+    private void mergeTail() {
+        if (tailSize == 0) return;
+        int size = baseSize + tailSize;
+        if (size > baseKeys.length) {
+            int capacity = Math.max(size, baseKeys.length + baseKeys.length / 2);
+            baseKeys = Arrays.copyOf(baseKeys, capacity);
+            baseRecords = Arrays.copyOf(baseRecords, capacity);
+        }
+
+        int b = baseSize - 1, t = tailSize - 1;
+        for (int i = size - 1; t >= 0; i--) {
+            if (b >= 0 && baseKeys[b] > tailKeys[t]) {
+                baseKeys[i] = baseKeys[b];
+                baseRecords[i] = baseRecords[b--];
+            } else {
+                baseKeys[i] = tailKeys[t];
+                baseRecords[i] = tailRecords[t--];
+            }
+        }
+        baseSize = size;
+        tailSize = 0;
+    }
+
+    // First position whose key is >= key
+    private static int lowerBound(long[] keys, int size, long key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // First position whose key is > key
+    private static int upperBound(long[] keys, int size, long key) {
+        int low = 0, high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= key) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Write the index and the number of log records it covers, replacing the
+    // file atomically
+    public void save(Path file, int coveredRecords) throws IOException {
+        mergeTail();
+        ByteBuffer contents = ByteBuffer.allocate(HEADER_SIZE + baseSize * ENTRY_SIZE + 4);
+        contents.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(coveredRecords).putLong(baseSize);
+        for (int i = 0; i < baseSize; i++) {
+            contents.putLong(baseKeys[i]).putInt(baseRecords[i]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(contents.array(), 0, contents.position());
+        contents.putInt((int) crc.getValue());
+        contents.flip();
+        ScoreLog.replace(file, contents);
+    }
+
+    // Load a saved index; returns the number of log records it covers, or 0
+    // (leaving the index empty) if the file is missing or damaged
+    public int load(Path file) throws IOException {
+        ByteBuffer contents;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + 4 || channel.size() > Integer.MAX_VALUE) return 0;
+            contents = ByteBuffer.allocate((int) channel.size());
+            while (contents.hasRemaining() && channel.read(contents) >= 0) {
+                // Keep reading until the buffer is full
+            }
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        contents.flip();
+
+        int end = contents.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(contents.array(), 0, end);
+        long count = contents.getLong(12);
+        if (contents.getInt(0) != MAGIC || contents.getShort(4) != VERSION
+                || (int) crc.getValue() != contents.getInt(end)
+                || count != (end - HEADER_SIZE) / ENTRY_SIZE) {
+            return 0;
+        }
+
+        int size = (int) count;
+        long[] keys = new long[size];
+        int[] records = new int[size];
+        contents.position(HEADER_SIZE);
+        for (int i = 0; i < size; i++) {
+            keys[i] = contents.getLong();
+            records[i] = contents.getInt();
+        }
+        baseKeys = keys;
+        baseRecords = records;
+        baseSize = size;
+        tailSize = 0;
+        return contents.getInt(8);
+    }
+
+    public void clear() {
+        baseKeys = new long[0];
+        baseRecords = new int[0];
+        baseSize = 0;
+        tailSize = 0;
+    }
+}
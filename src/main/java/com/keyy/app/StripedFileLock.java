@@ -0,0 +1,121 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Locks keyed by name that hold across threads and processes.
+// Each key hashes to one of a fixed number of stripes, and each stripe is one
+// byte of a shared lock file, locked with a FileChannel lock. Writers for keys
+// on different stripes never wait for each other. The lock file's contents
+// are never read or written, and it is never replaced, so unlike the data
+// files it guards it can be locked safely while they are renamed over.
+//
+// The JVM allows only one FileLock per region per process, so every stripe
+// also has an in-process lock that is taken first; the file lock is taken
+// only by the outermost hold of a thread. File locks belong to the whole
+// process, so a blocking lock() can be refused as a deadlock when two
+// instances each wait for a stripe that another thread of the other holds.
+// The file lock is therefore polled with tryLock, backing off up to 10 ms.
+public class StripedFileLock {
+    private static final long MAX_BACKOFF_MILLIS = 10;
+
+    private final Path file;
+    private final ReentrantLock[] stripes;
+    private final FileLock[] held;
+    private FileChannel channel;
+
+    public StripedFileLock(Path file, int stripeCount) {
+        this.file = file;
+        this.stripes = new ReentrantLock[stripeCount];
+        this.held = new FileLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Block until this thread holds the key's stripe in every process
+    public Hold lock(String key) throws IOException {
+        int stripe = Math.floorMod(key.hashCode(), stripes.length);
+        ReentrantLock local = stripes[stripe];
+        local.lock();
+        if (local.getHoldCount() == 1) {
+            try {
+                held[stripe] = acquire(stripe);
+            } catch (IOException | RuntimeException e) {
+                local.unlock();
+                throw e;
+            }
+        }
+        return new Hold(stripe);
+    }
+
+    // Run an action while this thread holds the key's stripe in every process
+    public void run(String key, LockedAction action) throws IOException {
+        Hold hold = lock(key);
+        try {
+            action.run();
+        } finally {
+            hold.close();
+        }
+    }
+
+    public interface LockedAction {
+        void run() throws IOException;
+    }
+
+    private FileLock acquire(int stripe) throws IOException {
+        long backoff = 1;
+        while (true) {
+            FileLock lock = channel().tryLock(stripe, 1, false);
+            if (lock != null) return lock;
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for lock stripe " + stripe);
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    // The channel is reopened if an interrupted thread closed it
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    public class Hold implements AutoCloseable {
+        private final int stripe;
+        private boolean released;
+
+        private Hold(int stripe) {
+            this.stripe = stripe;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (released) return;
+            released = true;
+
+            ReentrantLock local = stripes[stripe];
+            try {
+                if (local.getHoldCount() == 1 && held[stripe] != null) {
+                    FileLock lock = held[stripe];
+                    held[stripe] = null;
+                    if (lock.isValid()) lock.release();
+                }
+            } finally {
+                local.unlock();
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.function.Consumer;
 
 public class TestModeSelectionController {
 
@@ -26,6 +27,15 @@ public class TestModeSelectionController {
     @FXML
     private Button mode60sBtn;
 
+    @FXML
+    private Button practiceBtn;
+
+    @FXML
+    private Button ghostBtn;
+
+    @FXML
+    private Button raceBtn;
+
     @FXML
     private Button darkModeBtn;
 
@@ -38,10 +48,12 @@ public class TestModeSelectionController {
         darkModeBtn.setOnAction(e -> toggleDarkMode());
         backBtn.setOnAction(e -> goBackToDashboard());
 
-        // All modes currently start the same test (can be customized later)
-        mode15sBtn.setOnAction(e -> startTest());
-        mode30sBtn.setOnAction(e -> startTest());
-        mode60sBtn.setOnAction(e -> startTest());
+        mode15sBtn.setOnAction(e -> startTest(15));
+        mode30sBtn.setOnAction(e -> startTest(30));
+        mode60sBtn.setOnAction(e -> startTest(60));
+        practiceBtn.setOnAction(e -> startTest(60, true));
+        ghostBtn.setOnAction(e -> startGhostRace(30));
+        raceBtn.setOnAction(e -> openTypingTest(KeyyController::setRaceMode));
     }
 
     public void setCurrentUser(String username) {
@@ -60,13 +72,32 @@ public class TestModeSelectionController {
         }
     }
 
-    private void startTest() {
+    private void startTest(int seconds) {
+        startTest(seconds, false);
+    }
+
+    private void startTest(int seconds, boolean weakKeyPractice) {
+        openTypingTest(controller -> {
+            if (weakKeyPractice) {
+                controller.setPracticeMode(seconds);
+            } else {
+                controller.setTestDuration(seconds);
+            }
+        });
+    }
+
+    private void startGhostRace(int seconds) {
+        openTypingTest(controller -> controller.setGhostRace(seconds));
+    }
+
+    private void openTypingTest(Consumer<KeyyController> mode) {
         try {
             FXMLLoader loader = new FXMLLoader(getClass().getResource("keyy-view.fxml"));
             Scene scene = new Scene(loader.load());
 
             KeyyController controller = loader.getController();
             controller.setCurrentUser(currentUsername);
+            mode.accept(controller);
 
             Stage stage = (Stage) rootVBox.getScene().getWindow();
             stage.setScene(scene);
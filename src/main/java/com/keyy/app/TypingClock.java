@@ -0,0 +1,103 @@
+package com.keyy.app;
+
+// Words-per-minute from keystroke timestamps.
+// Time runs from the first keystroke to finish() (or the latest keystroke),
+// measured with System.nanoTime(), so a 7.9 second run counts as 7.9 seconds.
+// Every keystroke updates the counters and the sliding window in constant
+// amortized time. A word is five characters.
+public class TypingClock {
+    private static final long WINDOW_NANOS = 5_000_000_000L;
+    private static final double NANOS_PER_MINUTE = 60e9;
+
+    // Times of the correct keystrokes in the last WINDOW_NANOS, oldest first
+    private final long[] window = new long[1024];
+    private int windowHead;
+    private int windowSize;
+
+    private long first = -1;
+    private long last = -1;
+    private long end = -1;
+    private int typedChars;
+    private int correctChars;
+
+    public void reset() {
+        first = last = end = -1;
+        typedChars = correctChars = 0;
+        windowHead = windowSize = 0;
+    }
+
+    // Count a typed character (backspaces are not passed in)
+    public void keystroke(long nanos, boolean correct) {
+        if (first < 0) first = nanos;
+        last = nanos;
+        typedChars++;
+
+        if (correct) {
+            correctChars++;
+            if (windowSize == window.length) {
+                // Faster than the window can hold; forget the oldest
+                windowHead = (windowHead + 1) % window.length;
+                windowSize--;
+            }
+            window[(windowHead + windowSize) % window.length] = nanos;
+            windowSize++;
+        }
+        evictBefore(nanos - WINDOW_NANOS);
+    }
+
+    // Note the first keystroke, for keys such as backspace that are not counted
+    public void start(long nanos) {
+        if (first < 0) first = nanos;
+    }
+
+    // Stop the clock; later calls keep the first end time
+    public void finish(long nanos) {
+        if (end < 0 && first >= 0) end = Math.max(first, nanos);
+    }
+
+    public boolean isStarted() {
+        return first >= 0;
+    }
+
+    public long startNanos() {
+        return first;
+    }
+
+    public long elapsedNanos() {
+        long stop = end >= 0 ? end : last;
+        return first >= 0 && stop > first ? stop - first : 0;
+    }
+
+    public double elapsedSeconds() {
+        return elapsedNanos() / 1e9;
+    }
+
+    // Every typed character, right or wrong
+    public double rawWpm() {
+        return perMinute(typedChars, elapsedNanos());
+    }
+
+    // Correct characters only; this is the figure that gets saved
+    public double netWpm() {
+        return perMinute(correctChars, elapsedNanos());
+    }
+
+    // Correct characters over the last few seconds before now
+    public double windowWpm(long now) {
+        if (first < 0) return 0;
+        evictBefore(now - WINDOW_NANOS);
+        long span = Math.min(WINDOW_NANOS, now - first);
+        return perMinute(windowSize, span);
+    }
+
+    private void evictBefore(long cutoff) {
+        while (windowSize > 0 && window[windowHead] < cutoff) {
+            windowHead = (windowHead + 1) % window.length;
+            windowSize--;
+        }
+    }
+
+    private static double perMinute(int chars, long nanos) {
+        return nanos > 0 ? (chars / 5.0) / (nanos / NANOS_PER_MINUTE) : 0;
+    }
+}
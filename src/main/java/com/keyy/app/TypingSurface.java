@@ -0,0 +1,302 @@
+package com.keyy.app;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.Arrays;
+
+// Typing area drawn on a single Canvas.
+// The passage lives in a char array with one state byte per character, so the
+// scene graph stays one node no matter how long the text is. Changing a
+// character or moving the cursor repaints only the affected glyph cells; the
+// whole canvas is redrawn only on resize, new text or a theme change.
+public final class TypingSurface extends Region {
+    public static final byte UNTYPED = 0;
+    public static final byte CORRECT = 1;
+    public static final byte WRONG = 2;
+
+    private static final Font FONT = Font.font("Monospaced", 24);
+    private static final double LINE_SPACING = 8;
+    private static final double PADDING = 20;
+
+    private static final Color LIGHT_UNTYPED = Color.web("#4a4a4a");
+    private static final Color LIGHT_CORRECT = Color.web("#d4d4d8");
+    private static final Color DARK_UNTYPED = Color.web("#d1d0c5");
+    private static final Color DARK_CORRECT = Color.web("#646669");
+    private static final Color WRONG_COLOR = Color.web("#f87171");
+
+    // Extra carets for a ghost or race opponents, one colour per slot
+    public static final int MARKERS = 8;
+    private static final Color[] MARKER_COLORS = {
+            Color.web("#3b82f6", 0.7), Color.web("#a855f7", 0.7), Color.web("#4ade80", 0.8), Color.web("#e2b714", 0.8),
+            Color.web("#f97316", 0.7), Color.web("#ec4899", 0.7), Color.web("#14b8a6", 0.7), Color.web("#94a3b8", 0.8)
+    };
+
+    // One-character strings for fillText, so painting ASCII allocates nothing
+    private static final String[] ASCII_GLYPHS = new String[128];
+
+    static {
+        for (char c = 0; c < ASCII_GLYPHS.length; c++) {
+            ASCII_GLYPHS[c] = String.valueOf(c);
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final double glyphWidth;
+    private final double lineHeight;
+
+    private char[] text = new char[0];
+    private byte[] states = new byte[0];
+    private int length;
+    private int cursor;
+    private boolean darkMode;
+
+    // Character each marker is on, -1 when hidden, and how far through its cell it is
+    private final int[] markers = new int[MARKERS];
+    private final double[] markerFractions = new double[MARKERS];
+
+    // Top-left corner of every character, recomputed when the width changes
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int columns;
+    private int lineCount;
+    private double laidOutWidth = -1;
+
+    public TypingSurface() {
+        Text probe = new Text("M");
+        probe.setFont(FONT);
+        glyphWidth = probe.getLayoutBounds().getWidth();
+        lineHeight = probe.getLayoutBounds().getHeight() + LINE_SPACING;
+
+        getChildren().add(canvas);
+        Arrays.fill(markers, -1);
+    }
+
+    // Show a new passage with every character untyped and the cursor at the start
+    public void setText(CharSequence passage) {
+        length = 0;
+        cursor = 0;
+        Arrays.fill(markers, -1);
+        append(passage);
+
+        laidOutWidth = -1;
+        requestLayout();
+    }
+
+    // Add untyped text after the passage, laying out and painting only the new cells
+    public void append(CharSequence more) {
+        int start = length;
+        ensureCapacity(length + more.length());
+        for (int i = 0; i < more.length(); i++) {
+            text[length] = more.charAt(i);
+            states[length] = UNTYPED;
+            length++;
+        }
+
+        if (laidOutWidth < 0) return;
+        int lines = lineCount;
+        layoutFrom(start);
+        if (lineCount != lines) {
+            requestLayout();
+        }
+        for (int i = start; i < length; i++) {
+            paintCell(i);
+        }
+    }
+
+    // Remove the first lines of the passage and move everything else up.
+    // Returns how many characters were removed, so callers can shift their
+    // own indexes into the passage by the same amount.
+    public int dropLines(int lines) {
+        if (laidOutWidth < 0) return 0;
+
+        int removed = 0;
+        while (removed < length && rowOf(removed) < lines) {
+            removed++;
+        }
+        System.arraycopy(text, removed, text, 0, length - removed);
+        System.arraycopy(states, removed, states, 0, length - removed);
+        length -= removed;
+        cursor = Math.max(0, cursor - removed);
+        for (int slot = 0; slot < MARKERS; slot++) {
+            markers[slot] = markers[slot] < removed ? -1 : markers[slot] - removed;
+        }
+
+        // The dropped lines ended on word boundaries, so the rest wraps the same way
+        layoutFrom(0);
+        requestLayout();
+        paintAll();
+        return removed;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        return text[index];
+    }
+
+    // Line the character is on, counting from 0 (0 until the first layout)
+    public int rowOf(int index) {
+        if (laidOutWidth < 0 || index >= length) return 0;
+        return (int) Math.round((ys[index] - PADDING) / lineHeight);
+    }
+
+    public void setState(int index, byte state) {
+        if (states[index] == state) return;
+        states[index] = state;
+        paintCell(index);
+    }
+
+    public void setCursor(int index) {
+        int previous = cursor;
+        cursor = index;
+        if (previous < length) paintCell(previous);
+        if (index < length) paintCell(index);
+    }
+
+    // Show a marker caret partway through a character, or hide it with -1
+    public void setMarker(int slot, int index, double fraction) {
+        if (index >= length) index = -1;
+        if (index == markers[slot] && fraction == markerFractions[slot]) return;
+
+        int previous = markers[slot];
+        markers[slot] = index;
+        markerFractions[slot] = fraction;
+        if (previous >= 0 && previous < length) paintCell(previous);
+        if (index >= 0) paintCell(index);
+    }
+
+    public void setDarkMode(boolean darkMode) {
+        this.darkMode = darkMode;
+        paintAll();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth();
+        if (width != laidOutWidth) {
+            layoutText(width);
+        }
+        canvas.setWidth(width);
+        canvas.setHeight(getHeight());
+        paintAll();
+    }
+
+    @Override
+    protected double computePrefHeight(double width) {
+        if (width <= 0) width = getWidth() > 0 ? getWidth() : prefWidth(-1);
+        if (width != laidOutWidth) {
+            layoutText(width);
+        }
+        return 2 * PADDING + Math.max(1, lineCount) * lineHeight;
+    }
+
+    // Word-wrap the passage into lines that fit the given width
+    private void layoutText(double width) {
+        columns = Math.max(1, (int) ((width - 2 * PADDING) / glyphWidth));
+        laidOutWidth = width;
+        layoutFrom(0);
+    }
+
+    // Continue the layout at the given character, keeping everything before it
+    private void layoutFrom(int start) {
+        int row = 0;
+        int column = 0;
+        if (start > 0) {
+            row = rowOf(start - 1);
+            column = (int) Math.round((xs[start - 1] - PADDING) / glyphWidth) + 1;
+            if (column >= columns) {
+                row++;
+                column = 0;
+            }
+        }
+
+        for (int i = start; i < length; i++) {
+            if (column > 0 && text[i] != ' ' && (i == 0 || text[i - 1] == ' ')) {
+                // Move a word that would not fit onto the next line
+                int end = i;
+                while (end < length && text[end] != ' ') end++;
+                if (column + (end - i) > columns) {
+                    row++;
+                    column = 0;
+                }
+            }
+            xs[i] = PADDING + column * glyphWidth;
+            ys[i] = PADDING + row * lineHeight;
+
+            column++;
+            if (column >= columns) {
+                row++;
+                column = 0;
+            }
+        }
+
+        lineCount = length == 0 ? 0 : row + (column > 0 ? 1 : 0);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (text.length >= capacity) return;
+
+        int grown = Math.max(capacity, text.length * 2);
+        text = Arrays.copyOf(text, grown);
+        states = Arrays.copyOf(states, grown);
+        xs = Arrays.copyOf(xs, grown);
+        ys = Arrays.copyOf(ys, grown);
+    }
+
+    private void paintAll() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        for (int i = 0; i < length; i++) {
+            paintCell(i);
+        }
+    }
+
+    // Redraw one glyph cell: background, character, cursor underline and marker bars
+    private void paintCell(int index) {
+        if (laidOutWidth < 0) return;
+
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double x = xs[index];
+        double y = ys[index];
+        g.clearRect(x, y, glyphWidth, lineHeight);
+
+        g.setFont(FONT);
+        g.setTextBaseline(VPos.TOP);
+        g.setFill(colorFor(states[index]));
+        char c = text[index];
+        g.fillText(c < ASCII_GLYPHS.length ? ASCII_GLYPHS[c] : String.valueOf(c), x, y);
+
+        if (index == cursor) {
+            double underline = y + lineHeight - LINE_SPACING;
+            g.setStroke(colorFor(UNTYPED));
+            g.setLineWidth(2);
+            g.strokeLine(x, underline, x + glyphWidth, underline);
+        }
+
+        for (int slot = 0; slot < MARKERS; slot++) {
+            if (markers[slot] != index) continue;
+
+            // Kept a pixel inside the cell so clearing the cell erases all of it
+            double markerX = x + 1 + markerFractions[slot] * (glyphWidth - 2);
+            g.setStroke(MARKER_COLORS[slot]);
+            g.setLineWidth(2);
+            g.strokeLine(markerX, y + 2, markerX, y + lineHeight - LINE_SPACING);
+        }
+    }
+
+    private Color colorFor(byte state) {
+        switch (state) {
+            case CORRECT: return darkMode ? DARK_CORRECT : LIGHT_CORRECT;
+            case WRONG: return WRONG_COLOR;
+            default: return darkMode ? DARK_UNTYPED : LIGHT_UNTYPED;
+        }
+    }
+}
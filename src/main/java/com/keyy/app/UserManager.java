@@ -7,23 +7,132 @@ import java.util.*;
 
 public class UserManager {
     private static final String USER_DATA_DIR = "user_data";
-    private static final String USERS_FILE = USER_DATA_DIR + "/users.txt";
     private static final String SCORES_DIR = USER_DATA_DIR + "/scores";
+    private static final String DB_DIR = USER_DATA_DIR + "/db";
+    private static final String LOCK_FILE = USER_DATA_DIR + "/users.lock";
+    private static final String SKETCH_FILE = USER_DATA_DIR + "/wpm.sketch";
+    private static final String SKETCH_LOCK_FILE = USER_DATA_DIR + "/wpm.lock";
+    private static final int LOCK_STRIPES = 64;
+
+    // Most rows a windowed leaderboard keeps
+    private static final int WINDOW_CAPACITY = 100;
+
+    // Where users and scores are kept, chosen with -Dkeyy.store=flat|indexed
+    // and opened by the first initialize()
+    private static UserRepository repository;
+
+    // Today, 7 and 30 day boards, built on first use and updated by saveScore
+    private static WindowedLeaderboard windowedLeaderboard;
+
+    // Per-user aggregates, filled on first read and updated by saveScore
+    private static final Map<String, UserStats> statsCache = new HashMap<>();
+
+    // Guards each user's score, key stats and replay files across threads and
+    // other instances sharing user_data, one stripe per group of users
+    private static final StripedFileLock userLocks = new StripedFileLock(Paths.get(LOCK_FILE), LOCK_STRIPES);
+
+    // Every saved WPM, for percentiles; loaded by initialize() and merged into by saveScore.
+    // It has a lock of its own: rebuilding it reads every score, which waits
+    // for the score writer, and the writer takes userLocks stripes.
+    private static final ScoreDistribution distribution = new ScoreDistribution(Paths.get(SKETCH_FILE),
+            new StripedFileLock(Paths.get(SKETCH_LOCK_FILE), 1),
+            sketch -> {
+                for (String username : repository().usernames()) {
+                    repository().forEachScore(username,
+                            (wpm, accuracy, seconds, epochDay) -> sketch.update(wpm));
+                }
+            });
     
     // Initialize directories
     public static void initialize() {
         try {
             Files.createDirectories(Paths.get(SCORES_DIR));
-            
-            // Create users.txt if it doesn't exist
-            File usersFile = new File(USERS_FILE);
-            if (!usersFile.exists()) {
-                usersFile.createNewFile();
+            repository();
+            distribution.load();
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Write out pending scores; called when the application exits
+    public static synchronized void shutdown() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    // Open the configured store; the indexed one imports the flat files on first use
+    private static synchronized UserRepository repository() {
+        if (repository == null) {
+            FlatFileRepository flat = new FlatFileRepository(Paths.get(USER_DATA_DIR), userLocks);
+            UserRepository selected = "indexed".equalsIgnoreCase(System.getProperty("keyy.store", "flat").trim())
+                    ? new IndexedRepository(Paths.get(DB_DIR), flat)
+                    : flat;
+            try {
+                selected.open();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open the user store in " + USER_DATA_DIR, e);
             }
+            repository = selected;
+        }
+        return repository;
+    }
+    
+    private static Path keyStatsPath(String username) {
+        return Paths.get(SCORES_DIR, username + KeyStats.EXTENSION);
+    }
+
+    // Fold one test's key latencies and errors into the user's totals
+    public static void saveKeyStats(String username, KeyStats session) {
+        if (session.isEmpty()) return;
+
+        // Read, merge and replace under the lock so no other instance's merge is lost
+        try {
+            userLocks.run(username, () -> {
+                KeyStats total = KeyStats.read(keyStatsPath(username));
+                total.merge(session);
+                total.write(keyStatsPath(username));
+            });
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    // All key latencies and errors recorded for a user. The file is only
+    // ever replaced whole, so reading needs no lock.
+    public static KeyStats getKeyStats(String username) {
+        try {
+            return KeyStats.read(keyStatsPath(username));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new KeyStats();
+        }
+    }
+    
+    private static Path replayPath(String username) {
+        return Paths.get(SCORES_DIR, username + Replay.EXTENSION);
+    }
+
+    // Keep a finished test's keystrokes if they are the user's fastest for its length
+    public static void saveReplay(String username, Replay replay) {
+        try {
+            userLocks.run(username, () -> Replay.saveBest(replayPath(username), replay));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // The user's fastest recorded run of a test of the given length (0 for
+    // untimed), or null if none was recorded. The file is only ever replaced
+    // whole, so reading needs no lock.
+    public static Replay getBestReplay(String username, int seconds) {
+        try {
+            return Replay.best(replayPath(username), seconds);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
     
     // Register a new user
     public static boolean registerUser(String username, String password) {
@@ -32,20 +141,8 @@ public class UserManager {
             return false;
         }
         
-        // Check if user already exists
-        if (userExists(username)) {
-            return false;
-        }
-        
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(USERS_FILE, true))) {
-            writer.write(username + ":" + password);
-            writer.newLine();
-            
-            // Create user's score file
-            File scoreFile = new File(SCORES_DIR + "/" + username + ".txt");
-            scoreFile.createNewFile();
-            
-            return true;
+        try {
+            return repository().addUser(username, password);
         } catch (IOException e) {
             e.printStackTrace();
             return false;
@@ -54,119 +151,138 @@ public class UserManager {
     
     // Check if user exists
     public static boolean userExists(String username) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length == 2 && parts[0].equals(username)) {
-                    return true;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return repository().userExists(username);
     }
     
     // Login user
     public static boolean loginUser(String username, String password) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length == 2 && parts[0].equals(username) && parts[1].equals(password)) {
-                    return true;
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return false;
+        return repository().passwordMatches(username, password);
     }
     
     // Save score for a user
     public static void saveScore(String username, double wpm, double accuracy, int timeInSeconds) {
-        String scoreFile = SCORES_DIR + "/" + username + ".txt";
         LocalDate today = LocalDate.now();
+
+        // Keep the one-decimal precision the results screen shows
+        float storedWpm = Math.round(wpm * 10) / 10f;
+        float storedAccuracy = Math.round(accuracy * 10) / 10f;
         
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(scoreFile, true))) {
-            writer.write(String.format("%.1f,%.1f,%d,%s", wpm, accuracy, timeInSeconds, today.toString()));
-            writer.newLine();
+        repository().addScore(username, storedWpm, storedAccuracy, timeInSeconds, (int) today.toEpochDay());
+
+        synchronized (UserManager.class) {
+            UserStats stats = statsCache.get(username);
+            if (stats != null) {
+                stats.add(storedWpm, storedAccuracy, today);
+            }
+            if (windowedLeaderboard != null) {
+                windowedLeaderboard.recordScore(username, storedWpm, (int) today.toEpochDay());
+            }
+        }
+
+        try {
+            distribution.record(storedWpm);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    // Percent of all saved scores below a WPM, from the in-memory sketch
+    public static double getPercentile(double wpm) {
+        return distribution.percentBelow(wpm);
+    }
+
+    // Mean WPM over all saved scores, 0 when there are none
+    public static double getGlobalAverageWPM() {
+        return distribution.averageWpm();
+    }
+
+    // Number of scores behind getPercentile and getGlobalAverageWPM
+    public static long getGlobalScoreCount() {
+        return distribution.count();
+    }
+    
+    // Stream a user's scores oldest first without building a list
+    public static void forEachScore(String username, ScoreVisitor visitor) {
+        repository().forEachScore(username, visitor);
+    }
+
+    // Stream the scores saved between two dates inclusive, oldest first
+    public static void forEachScore(String username, LocalDate from, LocalDate to, ScoreVisitor visitor) {
+        repository().forEachScore(username, (int) from.toEpochDay(), (int) to.toEpochDay(), visitor);
+    }
     
     // Get all scores for a user
     public static List<ScoreRecord> getUserScores(String username) {
         List<ScoreRecord> scores = new ArrayList<>();
-        String scoreFile = SCORES_DIR + "/" + username + ".txt";
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(scoreFile))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    double wpm = Double.parseDouble(parts[0]);
-                    double accuracy = Double.parseDouble(parts[1]);
-                    int time = Integer.parseInt(parts[2]);
-                    LocalDate date = LocalDate.parse(parts[3]);
-                    scores.add(new ScoreRecord(wpm, accuracy, time, date, username));
-                }
-            }
-        } catch (IOException e) {
-            // File might not exist yet
-        }
+        forEachScore(username, (wpm, accuracy, seconds, epochDay) ->
+                scores.add(new ScoreRecord(wpm, accuracy, seconds, LocalDate.ofEpochDay(epochDay), username)));
         return scores;
     }
     
+    // Get cached aggregates for a user, reading the score file only the first time
+    public static synchronized UserStats getUserStats(String username) {
+        UserStats stats = statsCache.get(username);
+        if (stats == null) {
+            UserStats loaded = new UserStats();
+            forEachScore(username, (wpm, accuracy, seconds, epochDay) ->
+                    loaded.add(wpm, accuracy, LocalDate.ofEpochDay(epochDay)));
+            statsCache.put(username, loaded);
+            stats = loaded;
+        }
+        return stats;
+    }
+    
     // Get best WPM for a user
     public static double getBestWPM(String username) {
-        List<ScoreRecord> scores = getUserScores(username);
-        return scores.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .max()
-                .orElse(0.0);
+        return getUserStats(username).getBestWpm();
     }
     
     // Get average WPM for a user
     public static double getAverageWPM(String username) {
-        List<ScoreRecord> scores = getUserScores(username);
-        if (scores.isEmpty()) return 0.0;
-        
-        return scores.stream()
-                .mapToDouble(ScoreRecord::getWpm)
-                .average()
-                .orElse(0.0);
+        return getUserStats(username).getAverageWpm();
     }
     
-    // Get leaderboard (all users with their best scores)
-    public static List<Map.Entry<String, Double>> getLeaderboard() {
-        Map<String, Double> leaderboard = new HashMap<>();
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(":");
-                if (parts.length == 2) {
-                    String username = parts[0];
-                    double bestWPM = getBestWPM(username);
-                    leaderboard.put(username, bestWPM);
-                }
+    // One page of a window's ranking, starting at a 0-based rank; all-time
+    // comes straight from the store
+    public static List<LeaderboardEntry> getLeaderboardRange(LeaderboardWindow window, int from, int count) {
+        if (window == LeaderboardWindow.ALL_TIME) {
+            return repository().rankRange(from, count);
+        }
+        return windowedLeaderboard().range(window, from, count, (int) LocalDate.now().toEpochDay());
+    }
+
+    // Number of rows a window's ranking has
+    public static int getLeaderboardSize(LeaderboardWindow window) {
+        if (window == LeaderboardWindow.ALL_TIME) {
+            return repository().rankedCount();
+        }
+        return windowedLeaderboard().size(window, (int) LocalDate.now().toEpochDay());
+    }
+
+    // 1-based rank of a user in a window, or 0 if they are not ranked there
+    public static int getRank(LeaderboardWindow window, String username) {
+        if (window == LeaderboardWindow.ALL_TIME) {
+            return repository().rankOf(username);
+        }
+        return windowedLeaderboard().rankOf(window, username, (int) LocalDate.now().toEpochDay());
+    }
+
+    // Fill the windows from the last 30 days of each user's scores, once per process
+    private static synchronized WindowedLeaderboard windowedLeaderboard() {
+        if (windowedLeaderboard == null) {
+            int today = (int) LocalDate.now().toEpochDay();
+            WindowedLeaderboard board = new WindowedLeaderboard(WINDOW_CAPACITY, today);
+            for (String username : repository().usernames()) {
+                repository().forEachScore(username, WindowedLeaderboard.firstDay(today), today,
+                        (wpm, accuracy, seconds, epochDay) -> board.recordScore(username, wpm, epochDay));
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            windowedLeaderboard = board;
         }
-        
-        // Sort by WPM (descending)
-        List<Map.Entry<String, Double>> sortedLeaderboard = new ArrayList<>(leaderboard.entrySet());
-        sortedLeaderboard.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
-        
-        return sortedLeaderboard;
+        return windowedLeaderboard;
     }
-    
+
     // Get total attempts for a user
     public static int getTotalAttempts(String username) {
-        return getUserScores(username).size();
+        return getUserStats(username).getCount();
     }
 }
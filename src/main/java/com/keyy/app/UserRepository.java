@@ -0,0 +1,44 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.util.List;
+
+// Storage for accounts and score history, behind UserManager.
+// FlatFileRepository keeps users.txt plus one score log per user;
+// IndexedRepository keeps every user and score in two shared logs, with a
+// SortedIndex on (user, day) for history and date ranges and a RankIndex on
+// each user's best WPM for the leaderboard. Pick one with
+// -Dkeyy.store=flat|indexed.
+public interface UserRepository {
+    void open() throws IOException;
+
+    // Write out anything pending and release files; called when the application exits
+    void close();
+
+    // Add an account; false if the name is taken
+    boolean addUser(String username, String password) throws IOException;
+
+    boolean userExists(String username);
+
+    boolean passwordMatches(String username, String password);
+
+    List<String> usernames();
+
+    void addScore(String username, float wpm, float accuracy, int seconds, int epochDay);
+
+    // A user's scores oldest first
+    void forEachScore(String username, ScoreVisitor visitor);
+
+    // A user's scores from fromDay to toDay inclusive (epoch days), oldest first
+    void forEachScore(String username, int fromDay, int toDay, ScoreVisitor visitor);
+
+    // The all-time ranking orders users by best WPM, highest first, ties by
+    // name; users with no scores come last. Ranks passed in are 0-based.
+    int rankedCount();
+
+    // Up to count users starting at a rank
+    List<LeaderboardEntry> rankRange(int from, int count);
+
+    // 1-based rank of a user, or 0 for an unknown user
+    int rankOf(String username);
+}
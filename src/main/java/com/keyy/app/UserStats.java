@@ -0,0 +1,46 @@
+package com.keyy.app;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+// Running aggregates over one user's score history.
+// Every screen reads these instead of re-parsing the score file.
+public class UserStats {
+    private int count;
+    private double wpmSum;
+    private double bestWpm;
+    private double accuracySum;
+    private final Set<LocalDate> activeDays = new HashSet<>();
+
+    public synchronized void add(double wpm, double accuracy, LocalDate date) {
+        if (count == 0 || wpm > bestWpm) {
+            bestWpm = wpm;
+        }
+        count++;
+        wpmSum += wpm;
+        accuracySum += accuracy;
+        activeDays.add(date);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized double getBestWpm() {
+        return bestWpm;
+    }
+
+    public synchronized double getAverageWpm() {
+        return count > 0 ? wpmSum / count : 0.0;
+    }
+
+    public synchronized double getAverageAccuracy() {
+        return count > 0 ? accuracySum / count : 0.0;
+    }
+
+    // Number of distinct days with at least one test
+    public synchronized int getStreak() {
+        return activeDays.size();
+    }
+}
@@ -0,0 +1,150 @@
+package com.keyy.app;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// In-memory index over users.txt.
+// The file is read once, then every registration appends a single line and
+// updates the index. Other instances may register users in the same file, so
+// a lookup that misses first reads whatever lines were appended since, and a
+// registration holds an exclusive lock on the file while it reads those lines,
+// checks the name is free and appends its own.
+public class UserStore {
+    private final Path usersFile;
+    private final Map<String, String> passwords = new LinkedHashMap<>();
+    private boolean loaded = false;
+
+    // Bytes of users.txt already read into the index, always ending at a line break
+    private long readOffset = 0;
+
+    public UserStore(Path usersFile) {
+        this.usersFile = usersFile;
+    }
+
+    // Read users.txt into the index (only the first call does any work)
+    public synchronized void load() {
+        if (loaded) return;
+        refresh();
+        loaded = true;
+    }
+
+    // Read lines other instances appended since the last read. Registrations
+    // write under an exclusive lock, so reading under a shared one never sees
+    // half a line being written.
+    private void refresh() {
+        try (FileChannel channel = FileChannel.open(usersFile, StandardOpenOption.READ)) {
+            // Released when the channel closes
+            channel.lock(0, Long.MAX_VALUE, true);
+            readNewLines(channel);
+        } catch (NoSuchFileException e) {
+            // No users registered yet
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Index the lines after readOffset; returns the file size. A last line
+    // without its newline is indexed too, as the baseline reader did, but
+    // readOffset stays before it so a registration can finish it.
+    private long readNewLines(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size <= readOffset) return size;
+
+        ByteBuffer tail = ByteBuffer.allocate((int) (size - readOffset));
+        while (tail.hasRemaining() && channel.read(tail, readOffset + tail.position()) >= 0) {
+            // Keep reading until the buffer is full
+        }
+        byte[] bytes = tail.array();
+        int end = tail.position();
+        while (end > 0 && bytes[end - 1] != '\n') end--;
+
+        for (String line : new String(bytes, 0, end, StandardCharsets.UTF_8).split("\\R")) {
+            index(line);
+        }
+        index(new String(bytes, end, tail.position() - end, StandardCharsets.UTF_8).trim());
+        readOffset += end;
+        return size;
+    }
+
+    // Add a name:password line to the index; false if it is not one
+    private boolean index(String line) {
+        String[] parts = line.split(":");
+        if (parts.length != 2) return false;
+        // First entry wins, same as the old top-to-bottom scan
+        passwords.putIfAbsent(parts[0], parts[1]);
+        return true;
+    }
+
+    public synchronized boolean contains(String username) {
+        load();
+        if (!passwords.containsKey(username)) refresh();
+        return passwords.containsKey(username);
+    }
+
+    public synchronized boolean matches(String username, String password) {
+        load();
+        if (!passwords.containsKey(username)) refresh();
+        String stored = passwords.get(username);
+        return stored != null && stored.equals(password);
+    }
+
+    // Append a new user to users.txt and the index; false if the name is taken
+    public synchronized boolean add(String username, String password) throws IOException {
+        load();
+        if (passwords.containsKey(username)) {
+            return false;
+        }
+
+        byte[] line = (username + ":" + password + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(usersFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.lock(); // Held until the channel closes
+            // Another instance may have taken the name since this one last looked
+            long size = readNewLines(channel);
+
+            // A last line without its newline was written by hand or by
+            // another tool, or cut off by a crash. Keep it if it is still an
+            // account and finish it; drop it only if it is not.
+            if (size > readOffset) {
+                ByteBuffer rest = ByteBuffer.allocate((int) (size - readOffset));
+                while (rest.hasRemaining() && channel.read(rest, readOffset + rest.position()) >= 0) {
+                    // Keep reading until the buffer is full
+                }
+                if (index(new String(rest.array(), 0, rest.position(), StandardCharsets.UTF_8).trim())) {
+                    byte[] newline = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+                    ScoreLog.writeFully(channel.position(size), ByteBuffer.wrap(newline));
+                    readOffset = size + newline.length;
+                } else {
+                    channel.truncate(readOffset);
+                }
+            }
+            if (passwords.containsKey(username)) {
+                return false;
+            }
+
+            // One forced write per line; a crash can only tear the last line
+            ScoreLog.writeFully(channel.position(readOffset), ByteBuffer.wrap(line));
+            channel.force(false);
+            readOffset += line.length;
+        }
+        passwords.put(username, password);
+        return true;
+    }
+
+    // The stored password, or null for an unknown user
+    synchronized String password(String username) {
+        load();
+        return passwords.get(username);
+    }
+
+    // Snapshot of all registered usernames
+    public synchronized List<String> usernames() {
+        load();
+        refresh();
+        return new ArrayList<>(passwords.keySet());
+    }
+}
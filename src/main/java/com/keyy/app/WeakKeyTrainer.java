@@ -0,0 +1,137 @@
+package com.keyy.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Word picker for weak-key practice.
+// retarget() ranks every key and bigram in a user's KeyStats by how slow and
+// error-prone it is compared to their average, and keeps the worst few as
+// targets. Most words are then drawn from the corpus index entries for a
+// target, and the rest from the normal frequency-weighted corpus.
+public class WeakKeyTrainer {
+    private static final double TARGET_SHARE = 0.7;
+    private static final int MAX_KEYS = 6;
+    private static final int MAX_BIGRAMS = 8;
+    private static final int MIN_SAMPLES = 5;
+
+    // How much an error counts against a key compared to being slow
+    private static final double ERROR_PENALTY = 3;
+
+    // Keys and bigrams need to score at least this far above average (1.0) to be practised
+    private static final double MIN_SCORE = 1.15;
+
+    private final Corpus corpus;
+    private final CorpusIndex index;
+
+    // Targets are keys (0 until KEYS) and bigrams (KEYS + bigram), with
+    // cumulative weights for picking one
+    private int[] targets = new int[0];
+    private double[] cumulative = new double[0];
+
+    public WeakKeyTrainer(Corpus corpus) {
+        this.corpus = corpus;
+        this.index = corpus.index();
+    }
+
+    // Pick new targets from the user's latest totals
+    public void retarget(KeyStats stats) {
+        double latencySum = 0;
+        int latencyKeys = 0;
+        for (int key = 0; key < KeyStats.KEYS; key++) {
+            char c = (char) (KeyStats.FIRST_CHAR + key);
+            if (stats.keyCount(c) >= MIN_SAMPLES && stats.keyAverageMillis(c) > 0) {
+                latencySum += stats.keyAverageMillis(c);
+                latencyKeys++;
+            }
+        }
+        if (latencyKeys == 0) {
+            targets = new int[0];
+            cumulative = new double[0];
+            return;
+        }
+        double average = latencySum / latencyKeys;
+
+        int[] worstKeys = new int[MAX_KEYS];
+        double[] keyScores = new double[MAX_KEYS];
+        int keyCount = 0;
+        for (int key = 0; key < KeyStats.KEYS; key++) {
+            char c = (char) (KeyStats.FIRST_CHAR + key);
+            if (stats.keyCount(c) < MIN_SAMPLES || index.entriesWithKey(key) == 0) continue;
+            double score = stats.keyAverageMillis(c) / average + ERROR_PENALTY * stats.keyErrorRate(c);
+            if (score < MIN_SCORE) continue;
+            keyCount = keepWorst(worstKeys, keyScores, keyCount, key, score);
+        }
+
+        int[] worstBigrams = new int[MAX_BIGRAMS];
+        double[] bigramScores = new double[MAX_BIGRAMS];
+        int bigramCount = 0;
+        for (int bigram = 0; bigram < KeyStats.BIGRAMS; bigram++) {
+            if (stats.bigramCount(bigram) < MIN_SAMPLES || index.entriesWithBigram(bigram) == 0) continue;
+            double score = stats.bigramAverageMillis(bigram) / average + ERROR_PENALTY * stats.bigramErrorRate(bigram);
+            if (score < MIN_SCORE) continue;
+            bigramCount = keepWorst(worstBigrams, bigramScores, bigramCount, bigram, score);
+        }
+
+        targets = new int[keyCount + bigramCount];
+        cumulative = new double[keyCount + bigramCount];
+        double total = 0;
+        for (int i = 0; i < keyCount; i++) {
+            targets[i] = worstKeys[i];
+            total += keyScores[i];
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < bigramCount; i++) {
+            targets[keyCount + i] = KeyStats.KEYS + worstBigrams[i];
+            total += bigramScores[i];
+            cumulative[keyCount + i] = total;
+        }
+    }
+
+    public boolean hasTargets() {
+        return targets.length > 0;
+    }
+
+    // The keys and bigrams being practised, worst first within each kind
+    public List<String> targetNames() {
+        List<String> names = new ArrayList<>();
+        for (int target : targets) {
+            names.add(target < KeyStats.KEYS
+                    ? String.valueOf((char) (KeyStats.FIRST_CHAR + target))
+                    : KeyStats.bigramText(target - KeyStats.KEYS));
+        }
+        return names;
+    }
+
+    // Corpus entry for the next practice word
+    public int sample(Random random) {
+        if (targets.length == 0 || random.nextDouble() >= TARGET_SHARE) {
+            return corpus.sample(random);
+        }
+
+        double pick = random.nextDouble() * cumulative[cumulative.length - 1];
+        int i = 0;
+        while (i < cumulative.length - 1 && cumulative[i] <= pick) i++;
+
+        int target = targets[i];
+        int entry = target < KeyStats.KEYS
+                ? index.randomWithKey(target, random)
+                : index.randomWithBigram(target - KeyStats.KEYS, random);
+        return entry >= 0 ? entry : corpus.sample(random);
+    }
+
+    // Insert into a small array kept sorted by descending score, dropping the lowest
+    private static int keepWorst(int[] items, double[] scores, int count, int item, double score) {
+        if (count == items.length && score <= scores[count - 1]) return count;
+
+        int i = Math.min(count, items.length - 1);
+        while (i > 0 && scores[i - 1] < score) {
+            items[i] = items[i - 1];
+            scores[i] = scores[i - 1];
+            i--;
+        }
+        items[i] = item;
+        scores[i] = score;
+        return Math.min(count + 1, items.length);
+    }
+}
@@ -0,0 +1,152 @@
+package com.keyy.app;
+
+import java.util.*;
+
+// Leaderboards for the rolling windows (today, 7 days, 30 days).
+// Scores are rolled up into one bucket per day holding each user's totals for
+// that day. Every window keeps its users' totals over its days and a sorted
+// set of at most capacity entries: a new score updates one total and re-ranks
+// that user, O(log capacity) per window, so reading a window is just copying
+// its set. A window's best-so-far entries only ever improve, so a user pushed
+// out of the set can only come back by beating the entry at the bottom, which
+// keeps the set exact.
+//
+// When the day changes, buckets older than the longest window are dropped
+// and each window is rebuilt from the buckets it still covers; the score
+// history is never read again.
+public class WindowedLeaderboard {
+    private static final List<LeaderboardWindow> WINDOWS =
+            List.of(LeaderboardWindow.TODAY, LeaderboardWindow.WEEK, LeaderboardWindow.MONTH);
+    private static final int HISTORY_DAYS = LeaderboardWindow.MONTH.getDays();
+
+    private final int capacity;
+
+    // epoch day -> username -> that day's totals
+    private final TreeMap<Integer, Map<String, LeaderboardEntry>> days = new TreeMap<>();
+    private final Map<LeaderboardWindow, Window> windows = new EnumMap<>(LeaderboardWindow.class);
+    private int today;
+
+    public WindowedLeaderboard(int capacity, int today) {
+        this.capacity = capacity;
+        this.today = today;
+        for (LeaderboardWindow window : WINDOWS) {
+            windows.put(window, new Window(window));
+        }
+    }
+
+    // The first day whose scores any window still needs
+    public static int firstDay(int today) {
+        return today - HISTORY_DAYS + 1;
+    }
+
+    public synchronized void recordScore(String username, double wpm, int epochDay) {
+        if (epochDay > today) roll(epochDay);
+        if (epochDay < firstDay(today)) return;
+
+        days.computeIfAbsent(epochDay, d -> new HashMap<>())
+                .computeIfAbsent(username, LeaderboardEntry::new)
+                .addScore(wpm);
+
+        for (Window window : windows.values()) {
+            if (window.span.contains(epochDay, today)) {
+                window.record(username, wpm);
+            }
+        }
+    }
+
+    // Up to count entries of a window starting at a 0-based rank; nothing
+    // past the first capacity ranks is kept
+    public synchronized List<LeaderboardEntry> range(LeaderboardWindow window, int from, int count, int today) {
+        if (today > this.today) roll(today);
+
+        List<LeaderboardEntry> result = new ArrayList<>();
+        int rank = 0;
+        for (LeaderboardEntry entry : windows.get(window).ranked) {
+            if (result.size() == count) break;
+            if (rank++ < from) continue;
+            // Copies, so later scores do not change what the caller holds
+            LeaderboardEntry copy = new LeaderboardEntry(entry.getUsername());
+            copy.merge(entry);
+            result.add(copy);
+        }
+        return result;
+    }
+
+    // How many entries a window shows, at most capacity
+    public synchronized int size(LeaderboardWindow window, int today) {
+        if (today > this.today) roll(today);
+        return windows.get(window).ranked.size();
+    }
+
+    // 1-based rank of a user in a window, or 0 if they are not in its top entries
+    public synchronized int rankOf(LeaderboardWindow window, String username, int today) {
+        if (today > this.today) roll(today);
+
+        int rank = 1;
+        for (LeaderboardEntry entry : windows.get(window).ranked) {
+            if (entry.getUsername().equals(username)) return rank;
+            rank++;
+        }
+        return 0;
+    }
+
+    // Move to a new day: expire old buckets and rebuild the windows from the rest
+    private void roll(int newToday) {
+        today = newToday;
+        days.headMap(firstDay(today)).clear();
+        for (Window window : windows.values()) {
+            window.rebuild();
+        }
+    }
+
+    private class Window {
+        final LeaderboardWindow span;
+        final Map<String, LeaderboardEntry> totals = new HashMap<>();
+        final TreeSet<LeaderboardEntry> ranked = new TreeSet<>(Leaderboard.RANK_ORDER);
+
+        Window(LeaderboardWindow span) {
+            this.span = span;
+        }
+
+        void record(String username, double wpm) {
+            LeaderboardEntry entry = totals.computeIfAbsent(username, LeaderboardEntry::new);
+            if (entry.getAttempts() > 0 && wpm <= entry.getBestWpm()) {
+                // The best, and so the rank, stays the same
+                entry.addScore(wpm);
+                return;
+            }
+
+            // Take the entry out while its sort key changes
+            boolean wasRanked = ranked.remove(entry);
+            entry.addScore(wpm);
+            if (wasRanked) {
+                ranked.add(entry);
+            } else {
+                offer(entry);
+            }
+        }
+
+        void offer(LeaderboardEntry entry) {
+            if (ranked.size() < capacity) {
+                ranked.add(entry);
+            } else if (Leaderboard.RANK_ORDER.compare(entry, ranked.last()) < 0) {
+                ranked.add(entry);
+                ranked.pollLast();
+            }
+        }
+
+        void rebuild() {
+            totals.clear();
+            ranked.clear();
+            for (Map.Entry<Integer, Map<String, LeaderboardEntry>> day : days.entrySet()) {
+                if (!span.contains(day.getKey(), today)) continue;
+                for (LeaderboardEntry dayTotals : day.getValue().values()) {
+                    totals.computeIfAbsent(dayTotals.getUsername(), LeaderboardEntry::new).merge(dayTotals);
+                }
+            }
+            for (LeaderboardEntry entry : totals.values()) {
+                offer(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.keyy.app;
+
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+// Endless supply of words for timed tests.
+// Words are drawn one at a time as the typing surface runs low, so nothing is
+// generated beyond the few lines ahead of the cursor.
+public class WordGenerator {
+    private final Corpus corpus;
+    private final ToIntFunction<Random> sampler;
+    private final Random random;
+    private final StringBuilder word = new StringBuilder();
+    private int previous = -1;
+
+    public WordGenerator(Corpus corpus, Random random) {
+        this(corpus, corpus::sample, random);
+    }
+
+    // Draw entries of the corpus with a custom picker, e.g. WeakKeyTrainer
+    public WordGenerator(Corpus corpus, ToIntFunction<Random> sampler, Random random) {
+        this.corpus = corpus;
+        this.sampler = sampler;
+        this.random = random;
+    }
+
+    // A freshly drawn word, redrawn once if it repeats the previous one
+    public CharSequence next() {
+        int index = sampler.applyAsInt(random);
+        if (index == previous && corpus.size() > 1) {
+            index = sampler.applyAsInt(random);
+        }
+        previous = index;
+
+        word.setLength(0);
+        corpus.appendTo(word, index);
+        return word;
+    }
+}
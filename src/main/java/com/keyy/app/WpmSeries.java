@@ -0,0 +1,36 @@
+package com.keyy.app;
+
+import java.util.Arrays;
+
+// WPM samples over the course of a test, as two growable float arrays
+public class WpmSeries {
+    private float[] seconds = new float[64];
+    private float[] wpm = new float[64];
+    private int size;
+
+    public void add(double atSeconds, double value) {
+        if (size == seconds.length) {
+            seconds = Arrays.copyOf(seconds, size * 2);
+            wpm = Arrays.copyOf(wpm, size * 2);
+        }
+        seconds[size] = (float) atSeconds;
+        wpm[size] = (float) value;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public float seconds(int index) {
+        return seconds[index];
+    }
+
+    public float wpm(int index) {
+        return wpm[index];
+    }
+}
@@ -0,0 +1,99 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Rank error of the KLL sketch against exact ranks of the same WPM values
+class QuantileSketchTest {
+    private static final int SCORES = 100_000;
+    // About 1.7/k is expected; allow a few times that for unlucky compactions
+    private static final double MAX_ERROR_PERCENT = 2.0;
+
+    @Test
+    void rankErrorWithinBounds() {
+        float[] values = normalWpms(SCORES, new Random(7));
+        QuantileSketch sketch = new QuantileSketch();
+        double sum = 0;
+        for (float value : values) {
+            sketch.update(value);
+            sum += value;
+        }
+
+        assertEquals(SCORES, sketch.count(), "count");
+        assertEquals(sum / SCORES, sketch.mean(), 1e-9, "mean");
+        assertRanks(values, sketch.quantiles());
+    }
+
+    @Test
+    void mergedSketchKeepsTheBound() {
+        float[] values = normalWpms(SCORES, new Random(11));
+        QuantileSketch even = new QuantileSketch();
+        QuantileSketch odd = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            (i % 2 == 0 ? even : odd).update(values[i]);
+        }
+        even.merge(odd);
+
+        assertEquals(SCORES, even.count(), "count");
+        assertRanks(values, even.quantiles());
+    }
+
+    @Test
+    void encodeRoundTrips() throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        for (float value : normalWpms(10_000, new Random(3))) {
+            sketch.update(value);
+        }
+        QuantileSketch decoded = QuantileSketch.decode(ByteBuffer.wrap(sketch.encode().array()));
+
+        assertEquals(sketch.count(), decoded.count(), "count");
+        assertEquals(sketch.mean(), decoded.mean(), 1e-9, "mean");
+        QuantileSketch.Quantiles before = sketch.quantiles();
+        QuantileSketch.Quantiles after = decoded.quantiles();
+        for (double wpm = 0; wpm <= 130; wpm += 0.7) {
+            assertEquals(before.percentBelow(wpm), after.percentBelow(wpm), 1e-9, "percent below " + wpm);
+        }
+    }
+
+    @Test
+    void emptySketchReportsNothing() {
+        QuantileSketch.Quantiles quantiles = new QuantileSketch().quantiles();
+        assertEquals(0, quantiles.count());
+        assertEquals(0, quantiles.mean(), 0);
+        assertEquals(0, quantiles.percentBelow(50), 0);
+    }
+
+    private static void assertRanks(float[] values, QuantileSketch.Quantiles quantiles) {
+        float[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double wpm = 0; wpm <= 130; wpm += 0.7) {
+            int low = 0, high = sorted.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid] < wpm) low = mid + 1;
+                else high = mid;
+            }
+            double exact = 100.0 * low / sorted.length;
+            double error = Math.abs(quantiles.percentBelow(wpm) - exact);
+            double at = wpm;
+            assertTrue(error < MAX_ERROR_PERCENT,
+                    () -> String.format("off by %.2f%% below %.1f WPM", error, at));
+        }
+    }
+
+    // WPMs around 45 with the one-decimal precision scores are saved with
+    private static float[] normalWpms(int count, Random random) {
+        float[] values = new float[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.round(Math.max(0, 45 + 18 * random.nextGaussian()) * 10) / 10f;
+        }
+        return values;
+    }
+}
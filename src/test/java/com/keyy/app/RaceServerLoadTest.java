@@ -0,0 +1,234 @@
+package com.keyy.app;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Load test for RaceServer: one race on localhost with hundreds of simulated
+// racers typing at 40 to 120 WPM.
+// The server gets its own thread and all racers share the test's, so the
+// server's busy time is the share of a single core it needed. Each racer
+// times how long its own progress takes to come back in a broadcast, which
+// covers the 30 Hz send, the 20 Hz tick and both socket hops.
+class RaceServerLoadTest {
+    private static final int RACERS = 300;
+    private static final int RACE_SECONDS = 10;
+    private static final long SEND_INTERVAL_NANOS = 33_000_000;
+    private static final int PASSAGE_WORDS = 400;
+
+    // Bounds: half a core for the server, broadcasts at the 20 Hz tick, and
+    // progress back to its sender within a few ticks
+    private static final double MAX_CORE_SHARE = 0.5;
+    private static final double MIN_UPDATES_PER_SECOND = 18;
+    private static final double MAX_P99_MILLIS = 150;
+
+    @Test
+    @Timeout(60)
+    void hundredsOfRacersOnOneCore() throws Exception {
+        RaceServer server = new RaceServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                1_000, RACE_SECONDS * 1000L, PASSAGE_WORDS);
+        Thread serverThread = new Thread(server, "keyy-race");
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        List<SimulatedRacer> racers = new ArrayList<>();
+        long[] latencies = new long[1 << 20];
+        int latencyCount = 0;
+        long raceStart = -1;
+        long busyAtStart = 0;
+        long wall;
+        long busy;
+
+        try (Selector selector = Selector.open()) {
+            Random random = new Random(42);
+            for (int i = 0; i < RACERS; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.port()));
+                SimulatedRacer racer = new SimulatedRacer(channel, "racer" + i, 40 + random.nextInt(81));
+                racer.key = channel.register(selector, SelectionKey.OP_CONNECT, racer);
+                racers.add(racer);
+            }
+
+            int open = RACERS;
+            long nextSend = System.nanoTime();
+            while (open > 0) {
+                selector.select(Math.max(1, (nextSend - System.nanoTime()) / 1_000_000));
+                long now = System.nanoTime();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    SimulatedRacer racer = (SimulatedRacer) key.attachment();
+                    if (key.isConnectable()) {
+                        racer.channel.finishConnect();
+                        racer.channel.socket().setTcpNoDelay(true);
+                        key.interestOps(SelectionKey.OP_READ);
+                        racer.hello();
+                    } else if (key.isReadable() && !racer.read(now)) {
+                        key.cancel();
+                        racer.channel.close();
+                        open--;
+                    }
+
+                    if (racer.latency >= 0) {
+                        if (latencyCount < latencies.length) latencies[latencyCount++] = racer.latency;
+                        racer.latency = -1;
+                    }
+                    if (racer.startNanos >= 0 && raceStart < 0) {
+                        raceStart = racer.startNanos;
+                        busyAtStart = server.busyNanos();
+                    }
+                }
+
+                if (now >= nextSend) {
+                    for (SimulatedRacer racer : racers) {
+                        if (racer.key.isValid()) racer.sendProgress(now);
+                    }
+                    nextSend += SEND_INTERVAL_NANOS;
+                }
+            }
+            wall = System.nanoTime() - raceStart;
+            busy = server.busyNanos() - busyAtStart;
+        } finally {
+            server.close();
+        }
+
+        long updates = 0;
+        int started = 0;
+        for (SimulatedRacer racer : racers) {
+            updates += racer.positionFrames;
+            if (racer.startNanos >= 0) started++;
+        }
+        assertEquals(RACERS, started, "racers that got the start");
+
+        double coreShare = (double) busy / wall;
+        assertTrue(coreShare < MAX_CORE_SHARE,
+                () -> String.format("server busy %.1f%% of one core", 100 * coreShare));
+
+        double updatesPerSecond = updates / (double) started / (wall / 1e9);
+        assertTrue(updatesPerSecond >= MIN_UPDATES_PER_SECOND,
+                () -> String.format("%.1f position updates per racer per second", updatesPerSecond));
+
+        assertTrue(latencyCount > 0, "no progress came back");
+        Arrays.sort(latencies, 0, latencyCount);
+        double p99Millis = latencies[(int) (latencyCount * 0.99)] / 1e6;
+        assertTrue(p99Millis < MAX_P99_MILLIS,
+                () -> String.format("progress round trip p99 %.1f ms", p99Millis));
+    }
+
+    private static class SimulatedRacer {
+        final SocketChannel channel;
+        final String name;
+        final double charsPerNano;
+        final ByteBuffer in = ByteBuffer.allocate(RaceProtocol.HEADER_SIZE + RaceProtocol.MAX_FRAME);
+        final ByteBuffer out = ByteBuffer.allocate(256);
+        SelectionKey key;
+
+        int id;
+        int passageLength;
+        long startNanos = -1;
+        int sentPosition;
+        long positionFrames;
+
+        // The position being timed and when it was sent, and the last measured round trip
+        int pendingPosition = -1;
+        long pendingSince;
+        long latency = -1;
+
+        SimulatedRacer(SocketChannel channel, String name, int wpm) {
+            this.channel = channel;
+            this.name = name;
+            this.charsPerNano = wpm * 5 / 60e9;
+        }
+
+        void hello() throws IOException {
+            int frame = RaceProtocol.beginFrame(out, RaceProtocol.HELLO);
+            RaceProtocol.putString(out, name);
+            RaceProtocol.endFrame(out, frame);
+            flush();
+        }
+
+        void sendProgress(long now) {
+            if (startNanos < 0) return;
+            int position = (int) Math.min(passageLength, (now - startNanos) * charsPerNano);
+            if (position == sentPosition || out.remaining() < 5) return;
+
+            int frame = RaceProtocol.beginFrame(out, RaceProtocol.PROGRESS);
+            out.putShort((short) position);
+            RaceProtocol.endFrame(out, frame);
+            sentPosition = position;
+            if (pendingPosition < 0) {
+                pendingPosition = position;
+                pendingSince = now;
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                // Seen by the next read
+            }
+        }
+
+        private void flush() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+
+        // Handle whatever arrived; false once the race is over
+        boolean read(long now) throws IOException {
+            if (channel.read(in) < 0) return false;
+            in.flip();
+            int length;
+            while ((length = RaceProtocol.frameLength(in)) >= 0) {
+                int start = in.position();
+                in.position(start + RaceProtocol.HEADER_SIZE);
+                byte type = in.get();
+                switch (type) {
+                    case RaceProtocol.WELCOME:
+                        id = RaceProtocol.getUnsignedShort(in);
+                        passageLength = RaceProtocol.getString(in).length();
+                        break;
+                    case RaceProtocol.START:
+                        startNanos = now;
+                        break;
+                    case RaceProtocol.POSITIONS:
+                        positionFrames++;
+                        int count = RaceProtocol.getUnsignedShort(in);
+                        for (int i = 0; i < count; i++) {
+                            int racer = RaceProtocol.getUnsignedShort(in);
+                            int position = RaceProtocol.getUnsignedShort(in);
+                            if (racer == id && pendingPosition >= 0 && position >= pendingPosition) {
+                                latency = now - pendingSince;
+                                pendingPosition = -1;
+                            }
+                        }
+                        break;
+                    case RaceProtocol.END:
+                        return false;
+                    default:
+                        // Racers joining, leaving and finishing need no reply
+                }
+                in.position(start + length);
+            }
+            in.compact();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.keyy.app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Ranks and pages from the Fenwick tree against a linear scan of every user's best
+class RankIndexTest {
+    private static final int USERS = 3000;
+
+    @Test
+    void matchesLinearScan() {
+        Random random = new Random(5);
+        RankIndex index = new RankIndex();
+        // Best WPM in tenths, -1 for users without a score
+        Map<String, Integer> best = new HashMap<>();
+        for (int i = 0; i < USERS; i++) {
+            index.addUser("u" + i);
+            best.put("u" + i, -1);
+        }
+
+        for (int step = 1; step <= 50_000; step++) {
+            String username = "u" + random.nextInt(USERS);
+            int tenths = random.nextInt(1600);
+            index.updateBest(username, tenths / 10.0);
+            best.merge(username, tenths, Math::max);
+
+            if (step % 5000 == 0) {
+                List<String> order = new ArrayList<>(best.keySet());
+                order.sort(Comparator.comparingInt((String name) -> -best.get(name))
+                        .thenComparing(name -> name));
+
+                assertEquals(USERS, index.size(), "size");
+                for (int rank = 0; rank < order.size(); rank += 7) {
+                    assertEquals(rank + 1, index.rankOf(order.get(rank)), "rank of " + order.get(rank));
+                }
+                for (int from : new int[]{0, 1, 777, USERS - 10, USERS}) {
+                    assertEquals(order.subList(from, Math.min(order.size(), from + 25)), index.range(from, 25),
+                            "page from " + from);
+                }
+            }
+        }
+    }
+
+    @Test
+    void lowerBestIsIgnored() {
+        RankIndex index = new RankIndex();
+        index.updateBest("a", 80.0);
+        index.updateBest("b", 70.0);
+        index.updateBest("a", 60.0);
+        assertEquals(List.of("a", "b"), index.range(0, 10));
+        assertEquals(1, index.rankOf("a"));
+        assertEquals(0, index.rankOf("nobody"));
+    }
+}
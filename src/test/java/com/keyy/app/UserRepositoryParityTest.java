@@ -0,0 +1,126 @@
+package com.keyy.app;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The indexed store must answer every query the way the flat files do,
+// starting from what it imported out of them
+class UserRepositoryParityTest {
+    private static final int USERS = 120;
+    private static final int SCORES = 6000;
+    private static final int FIRST_DAY = 19000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void indexedMatchesFlat() throws Exception {
+        StripedFileLock locks = new StripedFileLock(dir.resolve("users.lock"), 64);
+        FlatFileRepository flat = new FlatFileRepository(dir, locks);
+        flat.open();
+        Random random = new Random(1);
+        for (int u = 0; u < USERS; u++) {
+            flat.addUser("u" + u, "p" + u);
+        }
+        // A few users never save a score
+        for (int i = 0; i < SCORES; i++) {
+            flat.addScore("u" + random.nextInt(USERS - 5), random.nextInt(1500) / 10f, 90f, 30,
+                    FIRST_DAY + random.nextInt(100));
+        }
+        List<LeaderboardEntry> expected = flat.rankRange(0, Integer.MAX_VALUE);
+
+        IndexedRepository indexed = new IndexedRepository(dir.resolve("db"), new FlatFileRepository(dir, locks));
+        indexed.open();
+        try {
+            assertEquals(flat.rankedCount(), indexed.rankedCount(), "ranked users");
+            assertSame(expected, indexed.rankRange(0, Integer.MAX_VALUE));
+            assertSame(expected.subList(0, 10), indexed.rankRange(0, 10));
+            assertSame(expected.subList(40, 90), indexed.rankRange(40, 50));
+            assertSame(expected.subList(expected.size() - 7, expected.size()),
+                    indexed.rankRange(expected.size() - 7, 50));
+            for (int i = 0; i < expected.size(); i += 11) {
+                String username = expected.get(i).getUsername();
+                assertEquals(flat.rankOf(username), indexed.rankOf(username), "rank of " + username);
+            }
+
+            for (int u = 0; u < USERS; u += 13) {
+                String username = "u" + u;
+                assertEquals(sum(flat, username, FIRST_DAY + 10, FIRST_DAY + 20),
+                        sum(indexed, username, FIRST_DAY + 10, FIRST_DAY + 20), "scores of " + username);
+            }
+
+            assertTrue(indexed.passwordMatches("u5", "p5"));
+            assertFalse(indexed.passwordMatches("u5", "x"));
+            assertFalse(indexed.addUser("u5", "z"));
+
+            // Both stores rank a new best first
+            flat.addUser("newbie", "pw");
+            flat.addScore("newbie", 999f, 100f, 30, FIRST_DAY + 50);
+            indexed.addUser("newbie", "pw");
+            indexed.addScore("newbie", 999f, 100f, 30, FIRST_DAY + 50);
+            assertSame(flat.rankRange(0, 5), indexed.rankRange(0, 5));
+        } finally {
+            indexed.close();
+            flat.close();
+        }
+
+        // Everything survives a reopen
+        IndexedRepository reopened = new IndexedRepository(dir.resolve("db"), new FlatFileRepository(dir, locks));
+        reopened.open();
+        try {
+            assertEquals(USERS + 1, reopened.usernames().size(), "users after reopen");
+            assertEquals(1, reopened.rankOf("newbie"), "rank after reopen");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void importGivesBackTheFlatJournal() throws Exception {
+        StripedFileLock locks = new StripedFileLock(dir.resolve("users.lock"), 64);
+        FlatFileRepository flat = new FlatFileRepository(dir, locks);
+        flat.open();
+        flat.addUser("solo", "pw");
+        flat.addScore("solo", 60f, 95f, 30, FIRST_DAY);
+        flat.close();
+
+        IndexedRepository indexed = new IndexedRepository(dir.resolve("db"), new FlatFileRepository(dir, locks));
+        indexed.open();
+        try {
+            assertEquals(1, indexed.rankedCount(), "imported users");
+            // The import opened the flat store, which claimed the first journal
+            try (ScoreJournal journal = ScoreJournal.tryOpen(dir, 0)) {
+                assertNotNull(journal, "journal still held after the import");
+            }
+        } finally {
+            indexed.close();
+        }
+    }
+
+    private static double sum(UserRepository repository, String username, int fromDay, int toDay) {
+        double[] sum = {0};
+        repository.forEachScore(username, fromDay, toDay, (wpm, accuracy, seconds, epochDay) -> sum[0] += wpm);
+        return sum[0];
+    }
+
+    private static void assertSame(List<LeaderboardEntry> expected, List<LeaderboardEntry> actual) {
+        assertEquals(expected.size(), actual.size(), "rows");
+        for (int i = 0; i < expected.size(); i++) {
+            LeaderboardEntry e = expected.get(i);
+            LeaderboardEntry a = actual.get(i);
+            assertEquals(e.getUsername(), a.getUsername(), "user at " + i);
+            assertEquals(e.getBestWpm(), a.getBestWpm(), 0, "best at " + i);
+            assertEquals(e.getAttempts(), a.getAttempts(), "attempts at " + i);
+            assertEquals(e.getAverageWpm(), a.getAverageWpm(), 1e-6, "average at " + i);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.keyy.app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Each window's top entries against a brute-force sort of every score it covers
+class WindowedLeaderboardTest {
+    private static final int CAPACITY = 10;
+    private static final int USERS = 500;
+    private static final int FIRST_DAY = 20000;
+
+    private final List<Score> scores = new ArrayList<>();
+
+    @Test
+    void topMatchesBruteForce() {
+        Random random = new Random(3);
+        WindowedLeaderboard board = new WindowedLeaderboard(CAPACITY, FIRST_DAY);
+        int day = FIRST_DAY;
+        for (int i = 1; i <= 100_000; i++) {
+            // About fifty days in all, so every window rolls over
+            if (random.nextInt(2000) == 0) day++;
+            String username = "u" + random.nextInt(USERS);
+            double wpm = random.nextInt(1500) / 10.0;
+            board.recordScore(username, wpm, day);
+            scores.add(new Score(username, wpm, day));
+
+            if (i % 10_000 == 0) {
+                for (LeaderboardWindow window : LeaderboardWindow.values()) {
+                    if (window == LeaderboardWindow.ALL_TIME) continue;
+                    check(board, window, day);
+                }
+            }
+        }
+
+        // Days pass with no new scores
+        for (int idle = 1; idle <= 8; idle++) {
+            check(board, LeaderboardWindow.TODAY, day + idle);
+            check(board, LeaderboardWindow.WEEK, day + idle);
+            check(board, LeaderboardWindow.MONTH, day + idle);
+        }
+    }
+
+    private void check(WindowedLeaderboard board, LeaderboardWindow window, int today) {
+        Map<String, LeaderboardEntry> totals = new HashMap<>();
+        for (Score score : scores) {
+            if (!window.contains(score.epochDay, today)) continue;
+            totals.computeIfAbsent(score.username, LeaderboardEntry::new).addScore(score.wpm);
+        }
+        List<LeaderboardEntry> expected = new ArrayList<>(totals.values());
+        expected.sort(Comparator.comparingDouble(LeaderboardEntry::getBestWpm).reversed()
+                .thenComparing(LeaderboardEntry::getUsername));
+        expected = expected.subList(0, Math.min(CAPACITY, expected.size()));
+
+        List<LeaderboardEntry> actual = board.range(window, 0, CAPACITY, today);
+        assertEquals(expected.size(), actual.size(), window + " rows on day " + today);
+        assertEquals(expected.size(), board.size(window, today), window + " size on day " + today);
+        for (int i = 0; i < expected.size(); i++) {
+            LeaderboardEntry e = expected.get(i);
+            LeaderboardEntry a = actual.get(i);
+            assertEquals(e.getUsername(), a.getUsername(), window + " user at " + i);
+            assertEquals(e.getBestWpm(), a.getBestWpm(), 0, window + " best at " + i);
+            assertEquals(e.getAttempts(), a.getAttempts(), window + " attempts at " + i);
+            assertEquals(i + 1, board.rankOf(window, e.getUsername(), today), window + " rank of " + e.getUsername());
+        }
+        if (expected.size() > 3) {
+            assertEquals(expected.get(3).getUsername(), board.range(window, 3, 1, today).get(0).getUsername(),
+                    window + " page starting at 3");
+        }
+    }
+
+    private static class Score {
+        final String username;
+        final double wpm;
+        final int epochDay;
+
+        Score(String username, double wpm, int epochDay) {
+            this.username = username;
+            this.wpm = wpm;
+            this.epochDay = epochDay;
+        }
+    }
+}